@@ -0,0 +1,142 @@
+package benchmark;
+
+import chess.*;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import serialization.GsonFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the engine's hot paths on each position in {@link Positions}.
+ * <p>
+ * Build with {@code mvn -pl shared,benchmarks -am package -DskipTests} and run with
+ * {@code java -jar benchmarks/target/benchmarks.jar}; JMH options such as
+ * {@code -p position=ENDGAME} or a benchmark name regex narrow the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+
+    private static final Gson GSON = GsonFactory.gson();
+
+    @Param
+    public Positions position;
+
+    private ChessGame game;
+    private ChessGame uncached;
+    private ChessBoard uncachedBoard;
+    private ChessBoard board;
+    private ChessPosition[] ownPieces;
+    private ChessMove move;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = position.game();
+        uncached = position.game();
+        uncachedBoard = uncached.getBoard();
+        board = position.board();
+
+        List<ChessPosition> squares = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = ChessPosition.of(row, col);
+                ChessPiece piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    squares.add(square);
+                    Collection<ChessMove> moves = game.validMoves(square);
+                    if (move == null && !moves.isEmpty()) {
+                        move = moves.iterator().next();
+                    }
+                }
+            }
+        }
+        ownPieces = squares.toArray(new ChessPosition[0]);
+    }
+
+    /**
+     * Legal moves of every piece belonging to the side to move, as the client asks for them.
+     * The position never changes, so after the first invocation the moves come from the cache.
+     */
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (ChessPosition square : ownPieces) {
+            blackhole.consume(game.validMoves(square));
+        }
+    }
+
+    /**
+     * As {@link #validMoves}, but the board is set again first so the moves are generated
+     * every time, as after each move in a real game
+     */
+    @Benchmark
+    public void validMovesUncached(Blackhole blackhole) {
+        uncached.setBoard(uncachedBoard);
+        for (ChessPosition square : ownPieces) {
+            blackhole.consume(uncached.validMoves(square));
+        }
+    }
+
+    /**
+     * A validated move followed by taking it back, so every invocation starts from the same position
+     */
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        game.makeMove(move);
+        game.unmakeMove();
+        return game;
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(game.getTeamTurn());
+    }
+
+    /**
+     * None of the positions is check, so this stops at the king attack test
+     */
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    /**
+     * The end-of-game test a client of the public API runs after each move. Stalemate needs
+     * the legal moves, so after the first invocation they come from the cache.
+     */
+    @Benchmark
+    public boolean checkmateOrStalemate() {
+        ChessGame.TeamColor team = game.getTeamTurn();
+        return game.isInCheckmate(team) || game.isInStalemate(team);
+    }
+
+    /**
+     * As {@link #checkmateOrStalemate}, but with the legal move cache cleared by setting the
+     * board again
+     */
+    @Benchmark
+    public boolean checkmateOrStalemateUncached() {
+        uncached.setBoard(uncachedBoard);
+        ChessGame.TeamColor team = uncached.getTeamTurn();
+        return uncached.isInCheckmate(team) || uncached.isInStalemate(team);
+    }
+
+    @Benchmark
+    public ChessBoard resetBoard() {
+        board.resetBoard();
+        return board;
+    }
+
+    @Benchmark
+    public ChessGame gsonRoundTrip() {
+        return GSON.fromJson(GSON.toJson(game), ChessGame.class);
+    }
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.Map;
+
+/**
+ * Benchmark corpus: one position from each phase of the game, drawn the same way as the
+ * passoff test boards (white pieces upper case, rank 8 first).
+ */
+public enum Positions {
+    // Ruy Lopez after 1. e4 e5 2. Nf3 Nc6 3. Bb5 a6
+    OPENING(ChessGame.TeamColor.WHITE, """
+            |r| |b|q|k|b|n|r|
+            | |p|p|p| |p|p|p|
+            |p| |n| | | | | |
+            | |B| | |p| | | |
+            | | | | |P| | | |
+            | | | | | |N| | |
+            |P|P|P|P| |P|P|P|
+            |R|N|B|Q|K| | |R|
+            """),
+    // Perft position 6: both sides castled, every piece still on the board
+    MIDDLEGAME(ChessGame.TeamColor.WHITE, """
+            |r| | | | |r|k| |
+            | |p|p| |q|p|p|p|
+            |p| |n|p| |n| | |
+            | | |b| |p| |B| |
+            | | |B| |P| |b| |
+            |P| |N|P| |N| | |
+            | |P|P| |Q|P|P|P|
+            |R| | | | |R|K| |
+            """),
+    // Rook and pawns each
+    ENDGAME(ChessGame.TeamColor.WHITE, """
+            | | | | | | | | |
+            | | | | | | | | |
+            | | | | |k| | | |
+            | | | |p| | | |p|
+            | | | |P| |K| |P|
+            | | | | | | | | |
+            |R| | | | | | | |
+            | | | | | | |r| |
+            """);
+
+    private static final Map<Character, ChessPiece.PieceType> TYPES = Map.of(
+            'p', ChessPiece.PieceType.PAWN,
+            'n', ChessPiece.PieceType.KNIGHT,
+            'r', ChessPiece.PieceType.ROOK,
+            'q', ChessPiece.PieceType.QUEEN,
+            'k', ChessPiece.PieceType.KING,
+            'b', ChessPiece.PieceType.BISHOP);
+
+    private final ChessGame.TeamColor turn;
+    private final String boardText;
+
+    Positions(ChessGame.TeamColor turn, String boardText) {
+        this.turn = turn;
+        this.boardText = boardText;
+    }
+
+    public ChessGame game() {
+        ChessGame game = new ChessGame();
+        game.setBoard(board());
+        game.setTeamTurn(turn);
+        return game;
+    }
+
+    public ChessBoard board() {
+        ChessBoard board = new ChessBoard();
+        int row = 8;
+        int column = 1;
+        for (char c : boardText.toCharArray()) {
+            switch (c) {
+                case '\n' -> {
+                    column = 1;
+                    row--;
+                }
+                case ' ' -> column++;
+                case '|' -> {
+                }
+                default -> {
+                    ChessGame.TeamColor color = Character.isLowerCase(c) ? ChessGame.TeamColor.BLACK
+                            : ChessGame.TeamColor.WHITE;
+                    board.addPiece(ChessPosition.of(row, column),
+                            ChessPiece.of(color, TYPES.get(Character.toLowerCase(c))));
+                    column++;
+                }
+            }
+        }
+        return board;
+    }
+}
@@ -4,14 +4,17 @@ import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import exception.ResponseException;
 import model.*;
+import serialization.GsonFactory;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ServerFacade {
 
     private final String serverUrl;
-    private final Gson gson = new Gson();
+    private final Gson gson = GsonFactory.gson();
 
     public ServerFacade(String serverUrl) {
         this.serverUrl = serverUrl;
@@ -41,8 +44,29 @@ public class ServerFacade {
     }
 
 
+    /**
+     * Lists every game in the lobby, following the server's next cursor a page at a time
+     */
     public ListGamesResponse listGames(String authToken) throws ResponseException {
-        return makeRequest("GET", "/game", null, ListGamesResponse.class, authToken);
+        List<GameData> games = new ArrayList<>();
+        Integer after = null;
+        do {
+            ListGamesResponse page = listGames(authToken, after);
+            if (page.games() != null) {
+                games.addAll(page.games());
+            }
+            after = page.next();
+        } while (after != null);
+        return new ListGamesResponse(games, null);
+    }
+
+
+    /**
+     * @param after the next value of the previous page, or null for the first page
+     */
+    public ListGamesResponse listGames(String authToken, Integer after) throws ResponseException {
+        String path = after == null ? "/game" : "/game?after=" + after;
+        return makeRequest("GET", path, null, ListGamesResponse.class, authToken);
     }
 
 
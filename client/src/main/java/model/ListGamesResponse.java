@@ -1,6 +1,10 @@
 package model;
 
 
+/**
+ * @param next the after value of the following page, or null on the last page
+ */
 public record ListGamesResponse(
-        java.util.List<GameData> games
+        java.util.List<GameData> games,
+        Integer next
 ) {}
\ No newline at end of file
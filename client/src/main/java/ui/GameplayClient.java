@@ -127,7 +127,7 @@ public class GameplayClient {
         if (s.length() != 2) {throw new IllegalArgumentException("Invalid position: " + input);}
         int col = s.charAt(0) - 'a' + 1;
         int row = Character.getNumericValue(s.charAt(1));
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
     }
 
     private void displayHelp() {
@@ -152,7 +152,7 @@ public class GameplayClient {
         String[][] board = new String[9][9];
         for (int r = 1; r <= 8; r++) {
             for (int c = 1; c <= 8; c++) {
-                ChessPiece piece = game.getBoard().getPiece(new ChessPosition(r, c));
+                ChessPiece piece = game.getBoard().getPiece(ChessPosition.of(r, c));
                 if (piece == null) {
                     board[r][c] = " ";
                 } else {
@@ -210,7 +210,7 @@ public class GameplayClient {
             boolean isSelected   = selectedPosition != null
                     && selectedPosition.getRow() == r
                     && selectedPosition.getColumn() == c;
-            boolean isHighlighted = highlightPositions.contains(new ChessPosition(r, c));
+            boolean isHighlighted = highlightPositions.contains(ChessPosition.of(r, c));
 
             String bg;
             if (isSelected) {
@@ -4,6 +4,7 @@ import chess.ChessMove;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import serialization.GsonFactory;
 import websocket.commands.*;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
@@ -20,7 +21,7 @@ import java.util.function.Consumer;
 public class WebSocketFacade {
     private Session session;
     private final Consumer<ServerMessage> handler;
-    private final Gson gson = new Gson();
+    private final Gson gson = GsonFactory.gson();
 
     public WebSocketFacade(String baseUrl, Consumer<ServerMessage> handler) {
         this.handler = handler;
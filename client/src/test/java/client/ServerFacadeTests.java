@@ -181,6 +181,25 @@ public class ServerFacadeTests {
     }
 
 
+    @Test
+    public void listGamesFollowsPages() throws ResponseException {
+        String token = registerHelper();
+
+        // The server sends 100 games a page by default
+        for (int i = 0; i < 105; i++) {
+            facade.createGame("game" + i, token);
+        }
+
+        ListGamesResponse first = facade.listGames(token, null);
+        assertEquals(100, first.games().size(), "The first page should be full");
+        assertNotNull(first.next(), "A second page should follow");
+        ListGamesResponse all = facade.listGames(token);
+        assertEquals(105, all.games().size(), "Every game should be listed");
+        assertEquals("game104", all.games().getLast().gameName(), "The last game should be on the last page");
+        facade.clear();
+    }
+
+
     // joinGame ----------------------------------------------------------------------------
 
     @Test
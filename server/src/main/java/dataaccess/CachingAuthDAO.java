@@ -0,0 +1,127 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers recently checked auth tokens in front of another {@link AuthDAO}, so an
+ * authenticated request or WebSocket command does not cost a query.
+ * <p>
+ * A token is cached when it is added or first looked up and is trusted for the time to
+ * live; after that it is looked up again. Removing a token, or clearing, drops it at once
+ * on this server. A token removed through another server stays valid here until its time
+ * to live runs out, so keep that short. Unknown tokens are never cached. Once more than
+ * the maximum are cached, expired tokens are dropped first, then arbitrary ones.
+ */
+public class CachingAuthDAO implements AuthDAO {
+
+    /**
+     * @param maxTokens  tokens kept in memory at most
+     * @param timeToLive milliseconds a cached token is trusted without a lookup
+     */
+    public record Settings(int maxTokens, long timeToLive) {
+        public static final Settings DEFAULTS = new Settings(50_000, 30_000);
+    }
+
+    private record Entry(AuthData auth, long expiresAt) {
+        boolean expired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private final AuthDAO delegate;
+    private final Settings settings;
+    private final ConcurrentHashMap<String, Entry> tokens = new ConcurrentHashMap<>();
+    // Bumped by every removal so lookups that started before it are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingAuthDAO(AuthDAO delegate) {
+        this(delegate, Settings.DEFAULTS);
+    }
+
+    public CachingAuthDAO(AuthDAO delegate, Settings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+    }
+
+    @Override
+    public void addAuth(AuthData authData) throws DataAccessException {
+        delegate.addAuth(authData);
+        // A new token is usually used right away
+        cache(authData, generation.get());
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return delegate.getAuth(null);
+        }
+        Entry entry = tokens.get(authToken);
+        if (entry != null) {
+            if (!entry.expired(System.nanoTime())) {
+                return entry.auth();
+            }
+            tokens.remove(authToken, entry);
+        }
+
+        long loadGeneration = generation.get();
+        AuthData loaded = delegate.getAuth(authToken);
+        if (loaded != null) {
+            cache(loaded, loadGeneration);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void removeAuth(String authToken) throws DataAccessException {
+        try {
+            delegate.removeAuth(authToken);
+        } finally {
+            generation.incrementAndGet();
+            if (authToken != null) {
+                tokens.remove(authToken);
+            }
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        try {
+            delegate.clear();
+        } finally {
+            generation.incrementAndGet();
+            tokens.clear();
+        }
+    }
+
+    /**
+     * @return tokens held in memory, including expired ones not yet dropped
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    private void cache(AuthData auth, long loadGeneration) {
+        Entry entry = new Entry(auth, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.timeToLive));
+        // Checked inside compute, so a removal either sees this entry or makes it skip
+        tokens.compute(auth.authToken(), (token, current) ->
+                generation.get() == loadGeneration ? entry : current);
+        if (tokens.size() > settings.maxTokens) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        long now = System.nanoTime();
+        tokens.values().removeIf(entry -> entry.expired(now));
+        Iterator<String> any = tokens.keySet().iterator();
+        while (tokens.size() > settings.maxTokens && any.hasNext()) {
+            any.next();
+            any.remove();
+        }
+    }
+}
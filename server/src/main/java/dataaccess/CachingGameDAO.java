@@ -0,0 +1,387 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import model.GameSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps recently used games in memory in front of another {@link GameDAO}, so reading a
+ * game in play costs neither a query nor parsing its stored state.
+ * <p>
+ * Reads go through to the underlying DAO on a miss. Updates change the cached game
+ * at once and are written back in the background: every flush interval the latest
+ * version of each changed game goes down in one {@link GameDAO#updateGames} batch, so
+ * several moves in a game cost one write. {@link #close()} flushes what is left.
+ * Games are dropped least recently used first once more than the maximum are cached,
+ * and when unused for the idle timeout; a dropped game that has not been written yet
+ * is still served from the pending writes.
+ * <p>
+ * Updates are refused rather than queued once the maximum are waiting, or while writing
+ * back fails, so callers are never told a change was saved that may never be. While
+ * writing back fails, each update first retries the write-back itself, so updates are
+ * accepted again as soon as the database recovers.
+ * <p>
+ * The cache keeps its own copy of each game and hands out copies, so callers may change
+ * what they get, and what they pass to {@link #updateGame}, without locking.
+ */
+public class CachingGameDAO implements GameDAO, AutoCloseable {
+
+    /**
+     * @param maxGames      games kept in memory at most
+     * @param idleTimeout   milliseconds a game stays cached without being used
+     * @param flushInterval milliseconds an update may wait before it is written back
+     * @param maxPending    changed games that may wait to be written back at most
+     */
+    public record Settings(int maxGames, long idleTimeout, long flushInterval, int maxPending) {
+        public static final Settings DEFAULTS = new Settings(10_000, 600_000, 250, 10_000);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingGameDAO.class);
+
+    private static final class Entry {
+        final GameData game;
+        long lastUsed = System.nanoTime();
+
+        Entry(GameData game) {
+            this.game = game;
+        }
+    }
+
+    private final GameDAO delegate;
+    private final Settings settings;
+    // Guarded by this, in least recently used order
+    private final LinkedHashMap<Integer, Entry> games;
+    // Guarded by this: the latest unwritten version of each changed game
+    private final Map<Integer, GameData> pending = new LinkedHashMap<>();
+    // Held while writing back or clearing, so a flush never lands after a clear
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    // Guarded by this: bumped by clear so loads that started before it are not cached
+    private long generation;
+    // Set while the last write-back failed
+    private volatile boolean flushFailing;
+    // Only touched by the flusher thread, so an outage is logged once
+    private boolean outageLogged;
+    private volatile boolean closed;
+
+    public CachingGameDAO(GameDAO delegate) {
+        this(delegate, Settings.DEFAULTS);
+    }
+
+    public CachingGameDAO(GameDAO delegate, Settings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.games = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > settings.maxGames;
+            }
+        };
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::maintain, settings.flushInterval, settings.flushInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        return delegate.createGame(game);
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        long loadGeneration;
+        synchronized (this) {
+            GameData cached = cached(gameID);
+            if (cached != null) {
+                return copy(gameID, cached);
+            }
+            loadGeneration = generation;
+        }
+
+        GameData loaded = delegate.getGame(gameID);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            // Another thread may have loaded or changed the game meanwhile; theirs is as new or newer
+            GameData cached = cached(gameID);
+            if (cached != null) {
+                return copy(gameID, cached);
+            }
+            if (loadGeneration == generation) {
+                games.put(gameID, new Entry(loaded));
+            }
+        }
+        return copy(gameID, loaded);
+    }
+
+    /**
+     * @return the cached or pending game, or null; caller holds the lock
+     */
+    private GameData cached(int gameID) {
+        Entry entry = games.get(gameID);
+        if (entry != null) {
+            entry.lastUsed = System.nanoTime();
+            return entry.game;
+        }
+        GameData unwritten = pending.get(gameID);
+        if (unwritten != null) {
+            games.put(gameID, new Entry(unwritten));
+        }
+        return unwritten;
+    }
+
+    /**
+     * Lists the stored games with any newer cached versions in their place
+     */
+    @Override
+    public List<GameData> listGames() throws DataAccessException {
+        List<GameData> stored = delegate.listGames();
+        List<GameData> result = new ArrayList<>(stored.size());
+        synchronized (this) {
+            for (GameData game : stored) {
+                Entry entry = games.get(game.gameID());
+                GameData newer = entry != null ? entry.game : pending.get(game.gameID());
+                result.add(newer != null ? copy(game.gameID(), newer) : game);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes back pending updates first, so the lobby shows seats just taken
+     */
+    @Override
+    public List<GameSummary> listSummaries(Set<GameSummary.Status> statuses, int afterGameID, int limit)
+            throws DataAccessException {
+        flush();
+        return delegate.listSummaries(statuses, afterGameID, limit);
+    }
+
+    /**
+     * Updates the cached game and queues it to be written back. The game must exist; a
+     * game that is not cached is looked up first.
+     */
+    @Override
+    public void updateGame(int gameID, GameData updated) throws DataAccessException {
+        GameData snapshot = copy(gameID, updated);
+        boolean known;
+        synchronized (this) {
+            known = games.containsKey(gameID) || pending.containsKey(gameID);
+        }
+        if (!known && delegate.getGame(gameID) == null) {
+            throw new DataAccessException("Error: game not found");
+        }
+        ensureWritable();
+        synchronized (this) {
+            if (!closed) {
+                checkCapacity(gameID);
+                games.put(gameID, new Entry(snapshot));
+                pending.put(gameID, snapshot);
+                return;
+            }
+            games.put(gameID, new Entry(snapshot));
+        }
+        delegate.updateGame(gameID, snapshot);
+    }
+
+    @Override
+    public void updateChessGame(int gameID, ChessGame game) throws DataAccessException {
+        ChessGame snapshot = new ChessGame(game);
+        modify(gameID, stored -> new GameData(gameID, stored.whiteUsername(), stored.blackUsername(),
+                stored.gameName(), snapshot));
+    }
+
+    @Override
+    public void updatePlayer(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException {
+        modify(gameID, stored -> color == ChessGame.TeamColor.WHITE
+                ? new GameData(gameID, username, stored.blackUsername(), stored.gameName(), stored.game())
+                : new GameData(gameID, stored.whiteUsername(), username, stored.gameName(), stored.game()));
+    }
+
+    /**
+     * Applies a change to the latest version of the game under the lock, so changes to
+     * different fields made at the same time are all kept
+     */
+    private void modify(int gameID, UnaryOperator<GameData> change) throws DataAccessException {
+        ensureWritable();
+        GameData loaded = null;
+        while (true) {
+            GameData updated = null;
+            synchronized (this) {
+                GameData current = cached(gameID);
+                if (current == null) {
+                    current = loaded;
+                }
+                if (current != null) {
+                    if (!closed) {
+                        checkCapacity(gameID);
+                    }
+                    updated = change.apply(current);
+                    games.put(gameID, new Entry(updated));
+                    if (!closed) {
+                        pending.put(gameID, updated);
+                        return;
+                    }
+                }
+            }
+            if (updated != null) {
+                delegate.updateGame(gameID, updated);
+                return;
+            }
+            loaded = delegate.getGame(gameID);
+            if (loaded == null) {
+                throw new DataAccessException("Error: game not found");
+            }
+        }
+    }
+
+    /**
+     * While writing back fails, tries again now and throws if it still fails
+     */
+    private void ensureWritable() throws DataAccessException {
+        if (flushFailing) {
+            flush();
+        }
+    }
+
+    /**
+     * Caller holds the lock
+     */
+    private void checkCapacity(int gameID) throws DataAccessException {
+        if (pending.size() >= settings.maxPending && !pending.containsKey(gameID)) {
+            throw new DataAccessException("Error: too many games waiting to be saved");
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                games.clear();
+                pending.clear();
+                generation++;
+            }
+            delegate.clear();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending update to the underlying DAO now. On failure the updates stay
+     * pending, behind any newer ones, and are retried by the next flush.
+     */
+    public void flush() throws DataAccessException {
+        flushLock.lock();
+        try {
+            Map<Integer, GameData> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    // Nothing left to retry, e.g. after a clear
+                    flushFailing = false;
+                    return;
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+            try {
+                delegate.updateGames(batch);
+                flushFailing = false;
+            } catch (DataAccessException | RuntimeException ex) {
+                synchronized (this) {
+                    batch.forEach(pending::putIfAbsent);
+                }
+                flushFailing = true;
+                throw ex;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void maintain() {
+        try {
+            flush();
+            if (outageLogged) {
+                LOG.info("Writing games back works again");
+                outageLogged = false;
+            }
+        } catch (DataAccessException | RuntimeException ex) {
+            // Report an outage once, not on every retry
+            if (!outageLogged) {
+                LOG.error("Writing games back failed; {} waiting, new updates refused until it works",
+                        pendingWrites(), ex);
+                outageLogged = true;
+            }
+        }
+        evictIdle();
+    }
+
+    private synchronized void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(settings.idleTimeout);
+        Iterator<Entry> leastRecentFirst = games.values().iterator();
+        while (leastRecentFirst.hasNext()) {
+            if (leastRecentFirst.next().lastUsed - cutoff >= 0) {
+                break;
+            }
+            leastRecentFirst.remove();
+        }
+    }
+
+    /**
+     * @return games held in memory
+     */
+    public synchronized int size() {
+        return games.size();
+    }
+
+    /**
+     * @return games changed but not yet written back
+     */
+    public synchronized int pendingWrites() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the background writer and writes back everything pending. Updates after
+     * this are written straight through.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(settings.flushInterval + 5_000, TimeUnit.MILLISECONDS);
+            flush();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException ex) {
+            LOG.error("Writing games back on close failed; {} not saved", pendingWrites(), ex);
+        }
+    }
+
+    private static GameData copy(int gameID, GameData game) {
+        ChessGame chessGame = game.game() == null ? null : new ChessGame(game.game());
+        return new GameData(gameID, game.whiteUsername(), game.blackUsername(), game.gameName(), chessGame);
+    }
+}
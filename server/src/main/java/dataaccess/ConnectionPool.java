@@ -0,0 +1,425 @@
+package dataaccess;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JDBC connections, so DAO calls reuse open connections instead of
+ * paying a TCP and login handshake each time.
+ * <p>
+ * {@link #getConnection()} hands out a wrapper whose {@code close()} returns the
+ * connection to the pool, so callers keep using try-with-resources. At most
+ * {@code maxSize} connections are borrowed at once; further callers wait up to the
+ * connection timeout. A connection that sat idle longer than the validation interval is
+ * checked with {@link Connection#isValid} before it is handed out. A background task
+ * keeps {@code minSize} connections open, closes connections idle past the idle timeout,
+ * and reports connections held past the leak detection threshold along with the stack
+ * that borrowed them.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Pool settings; times are in milliseconds and a leak threshold of 0 turns leak
+     * detection off
+     */
+    public record Settings(int minSize, int maxSize, long connectionTimeout, long validationInterval,
+                           long idleTimeout, long leakDetectionThreshold) {
+
+        public static final Settings DEFAULTS = new Settings(2, 10, 5_000, 500, 600_000, 0);
+
+        public Settings {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException("Bad pool size " + minSize + ".." + maxSize);
+            }
+        }
+
+        /**
+         * Reads the {@code db.pool.*} keys, e.g. {@code db.pool.maxSize=20}, using the
+         * defaults for any that are missing
+         */
+        public static Settings fromProperties(Properties props) {
+            return new Settings(
+                    intProperty(props, "db.pool.minSize", DEFAULTS.minSize),
+                    intProperty(props, "db.pool.maxSize", DEFAULTS.maxSize),
+                    longProperty(props, "db.pool.connectionTimeout", DEFAULTS.connectionTimeout),
+                    longProperty(props, "db.pool.validationInterval", DEFAULTS.validationInterval),
+                    longProperty(props, "db.pool.idleTimeout", DEFAULTS.idleTimeout),
+                    longProperty(props, "db.pool.leakDetectionThreshold", DEFAULTS.leakDetectionThreshold));
+        }
+
+        private static int intProperty(Properties props, String key, int defaultValue) {
+            String value = props.getProperty(key);
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        }
+
+        private static long longProperty(Properties props, String key, long defaultValue) {
+            String value = props.getProperty(key);
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long HOUSEKEEPING_PERIOD = 1_000;
+    // How long a borrower with no free slot waits on the idle queue before checking for one again
+    private static final long SLOT_RECHECK_INTERVAL = 50;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final Settings settings;
+    private final PoolMetrics metrics = new PoolMetrics();
+    // One permit per connection that may be borrowed
+    private final Semaphore permits;
+    // Most recently returned first, so a quiet pool leaves the oldest connections to time out
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    // Idle plus in use plus being opened, never above maxSize
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, Settings settings) {
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::maintain, 0, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the connection timeout if all are in use.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @throws SQLException if the wait times out or a new connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.connectionTimeout);
+        try {
+            if (!permits.tryAcquire(settings.connectionTimeout, TimeUnit.MILLISECONDS)) {
+                throw timedOut();
+            }
+        } catch (InterruptedException ex) {
+            throw interrupted(ex);
+        }
+
+        try {
+            PooledConnection pooled = take(deadline);
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowSite = settings.leakDetectionThreshold > 0 ? new Exception("Borrowed here") : null;
+            pooled.leakReported = false;
+            inUse.add(pooled);
+            metrics.recordBorrow(pooled.borrowedAt - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private PooledConnection take(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) {
+                if (reserve()) {
+                    return open();
+                }
+                // Every slot is taken by connections the housekeeper is opening, so one will be
+                // idle shortly. Wait for it, checking now and then in case a slot was freed instead.
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw timedOut();
+                }
+                try {
+                    pooled = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(SLOT_RECHECK_INTERVAL)),
+                            TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    throw interrupted(ex);
+                }
+                if (pooled == null) {
+                    continue;
+                }
+            }
+            if (System.nanoTime() - pooled.lastUsed < TimeUnit.MILLISECONDS.toNanos(settings.validationInterval)
+                    || isValid(pooled.physical)) {
+                return pooled;
+            }
+            metrics.recordValidationFailure();
+            discard(pooled);
+        }
+    }
+
+    private SQLException timedOut() {
+        metrics.recordTimeout();
+        return new SQLException("Timed out after " + settings.connectionTimeout
+                + "ms waiting for a database connection; " + inUse.size() + " in use");
+    }
+
+    private static SQLException interrupted(InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return new SQLException("Interrupted waiting for a database connection", ex);
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = total.get();
+            if (current >= settings.maxSize) {
+                return false;
+            }
+        } while (!total.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Opens a connection for a slot already reserved in {@link #total}
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            PooledConnection pooled = new PooledConnection(factory.open());
+            metrics.recordCreated();
+            return pooled;
+        } catch (SQLException | RuntimeException ex) {
+            total.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        inUse.remove(pooled);
+        try {
+            if (closed || pooled.broken) {
+                discard(pooled);
+                return;
+            }
+            try {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.physical.clearWarnings();
+            } catch (SQLException ex) {
+                discard(pooled);
+                return;
+            }
+            pooled.lastUsed = System.nanoTime();
+            idle.addFirst(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        metrics.recordClosed();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ex) {
+            // Already unusable; nothing more to release
+        }
+    }
+
+    /**
+     * Reports leaks, closes connections idle past the idle timeout and opens connections
+     * up to the minimum size. Runs on the housekeeping thread.
+     */
+    void maintain() {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (settings.leakDetectionThreshold > 0) {
+            long threshold = TimeUnit.MILLISECONDS.toNanos(settings.leakDetectionThreshold);
+            for (PooledConnection pooled : inUse) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > threshold) {
+                    pooled.leakReported = true;
+                    metrics.recordLeak();
+                    LOG.warn("Possible connection leak: held over {}ms", settings.leakDetectionThreshold,
+                            pooled.borrowSite);
+                }
+            }
+        }
+
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeout);
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && total.get() > settings.minSize) {
+            PooledConnection pooled = oldestFirst.next();
+            // A borrower may have taken it since the iterator saw it
+            if (now - pooled.lastUsed > idleTimeout && idle.removeLastOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+
+        while (!closed && total.get() < settings.minSize && reserve()) {
+            try {
+                idle.addLast(open());
+            } catch (SQLException | RuntimeException ex) {
+                // The database is unreachable; borrowers will see the error themselves
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return connections currently borrowed
+     */
+    public int active() {
+        return inUse.size();
+    }
+
+    /**
+     * @return open connections waiting to be borrowed
+     */
+    public int idle() {
+        return idle.size();
+    }
+
+    /**
+     * @return open connections, idle or borrowed
+     */
+    public int total() {
+        return total.get();
+    }
+
+    /**
+     * @return callers currently waiting for a connection
+     */
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Closes the idle connections and stops handing out new ones; borrowed connections
+     * are closed as they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private final class PooledConnection {
+        final Connection physical;
+        volatile long lastUsed = System.nanoTime();
+        volatile long borrowedAt;
+        volatile Exception borrowSite;
+        volatile boolean leakReported;
+        // Set when the driver reports the connection itself failed
+        volatile boolean broken;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * A new handle per borrow, so a caller that keeps using a connection after
+         * closing it cannot reach the next borrower's session
+         */
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (closed) {
+                            return null;
+                        }
+                        closed = true;
+                    }
+                    giveBack(pooled);
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        return closed || pooled.physical.isClosed();
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection is closed");
+                }
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                // SQLState class 08 is a connection exception
+                if (cause instanceof SQLException sqlEx && sqlEx.getSQLState() != null
+                        && sqlEx.getSQLState().startsWith("08")) {
+                    pooled.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
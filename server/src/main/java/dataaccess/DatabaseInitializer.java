@@ -1,5 +1,8 @@
 package dataaccess;
 
+import java.sql.SQLException;
+import java.sql.Statement;
+
 public class DatabaseInitializer {
     private static final String USER_DDL = """
       CREATE TABLE IF NOT EXISTS user (
@@ -24,11 +27,59 @@ public class DatabaseInitializer {
         blackUsername VARCHAR(50),
         gameName      VARCHAR(100)  NOT NULL,
         gameState     TEXT          NOT NULL,
+        snapshotPly   INT           NOT NULL  DEFAULT 0,
+        positionKey   BIGINT,
+        status        VARCHAR(12)   NOT NULL  DEFAULT 'OPEN',
+        INDEX game_status (status, gameID),
         FOREIGN KEY(whiteUsername) REFERENCES user(username) ON DELETE SET NULL,
         FOREIGN KEY(blackUsername) REFERENCES user(username) ON DELETE SET NULL
       );
       """;
 
+    // Game tables created before moves were logged have no snapshotPly column
+    private static final String GAME_SNAPSHOT_COLUMN = """
+      ALTER TABLE game ADD COLUMN snapshotPly INT NOT NULL DEFAULT 0
+      """;
+
+    // Game tables created before the lobby query have no status column
+    private static final String GAME_STATUS_COLUMN = """
+      ALTER TABLE game ADD COLUMN status VARCHAR(12) NOT NULL DEFAULT 'OPEN'
+      """;
+
+    private static final String GAME_STATUS_INDEX = """
+      CREATE INDEX game_status ON game (status, gameID)
+      """;
+
+    // A finished game's stored state is a FEN string ending in " #", or legacy JSON with "gameOver":true
+    private static final String GAME_STATUS_BACKFILL = """
+      UPDATE game SET status = CASE
+        WHEN gameState LIKE '%#"' OR gameState LIKE '%"gameOver":true%' THEN 'FINISHED'
+        WHEN whiteUsername IS NULL OR blackUsername IS NULL THEN 'OPEN'
+        ELSE 'IN_PROGRESS'
+      END
+      """;
+
+    // Games and moves stored before writes were checked against the stored position have no key
+    private static final String GAME_KEY_COLUMN = """
+      ALTER TABLE game ADD COLUMN positionKey BIGINT
+      """;
+
+    private static final String GAME_MOVE_KEY_COLUMN = """
+      ALTER TABLE game_move ADD COLUMN positionKey BIGINT
+      """;
+
+    private static final String GAME_MOVE_DDL = """
+      CREATE TABLE IF NOT EXISTS game_move (
+        gameID      INT           NOT NULL,
+        ply         INT           NOT NULL,
+        move        VARCHAR(5)    NOT NULL,
+        positionKey BIGINT,
+        playedAt    TIMESTAMP(3)  NOT NULL  DEFAULT CURRENT_TIMESTAMP(3),
+        PRIMARY KEY(gameID, ply),
+        FOREIGN KEY(gameID) REFERENCES game(gameID) ON DELETE CASCADE
+      );
+      """;
+
 
     public static void initialize() throws Exception {
         DatabaseManager.createDatabase();
@@ -38,6 +89,29 @@ public class DatabaseInitializer {
             stmt.executeUpdate(USER_DDL);
             stmt.executeUpdate(AUTH_DDL);
             stmt.executeUpdate(GAME_DDL);
+            if (!hasColumn(stmt, "game", "snapshotPly")) {
+                stmt.executeUpdate(GAME_SNAPSHOT_COLUMN);
+            }
+            if (!hasColumn(stmt, "game", "status")) {
+                stmt.executeUpdate(GAME_STATUS_COLUMN);
+                stmt.executeUpdate(GAME_STATUS_INDEX);
+                stmt.executeUpdate(GAME_STATUS_BACKFILL);
+            }
+            if (!hasColumn(stmt, "game", "positionKey")) {
+                stmt.executeUpdate(GAME_KEY_COLUMN);
+            }
+            stmt.executeUpdate(GAME_MOVE_DDL);
+            if (!hasColumn(stmt, "game_move", "positionKey")) {
+                stmt.executeUpdate(GAME_MOVE_KEY_COLUMN);
+            }
+        }
+    }
+
+    private static boolean hasColumn(Statement stmt, String table, String column) {
+        try (var rs = stmt.executeQuery("SELECT " + column + " FROM " + table + " WHERE 1 = 0")) {
+            return true;
+        } catch (SQLException ex) {
+            return false;
         }
     }
-}
\ No newline at end of file
+}
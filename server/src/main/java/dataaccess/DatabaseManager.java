@@ -8,12 +8,18 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    // Set when db.url names the database itself, e.g. an embedded H2 database in MySQL mode
+    private static boolean urlIncludesDatabase;
+    private static volatile ConnectionPool pool;
 
     static {
         loadPropertiesFromResources();
     }
 
     static public void createDatabase() throws DataAccessException {
+        if (urlIncludesDatabase) {
+            return;
+        }
         var statement = "CREATE DATABASE IF NOT EXISTS " + databaseName;
         try (var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
              var preparedStatement = conn.prepareStatement(statement)) {
@@ -23,25 +29,61 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Borrows a connection from the pool; closing it returns it to the pool
+     */
     static public Connection getConnection() throws DataAccessException {
         try {
-            Connection conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            conn.setAutoCommit(true);
-            return conn;
+            return pool.getConnection();
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * @return the pool behind {@link #getConnection()}, for its sizes and metrics
+     */
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Reads the connection settings and replaces the connection pool, closing the old one.
+     * {@code db.url}, if present, is used as the JDBC URL in place of {@code db.host} and
+     * {@code db.port}, and pool settings are read from the {@code db.pool.*} keys.
+     */
     public static void loadProperties(Properties props) {
         databaseName = props.getProperty("db.name");
         dbUsername = props.getProperty("db.user");
         dbPassword = props.getProperty("db.password");
 
-        var host = props.getProperty("db.host");
-        var port = Integer.parseInt(props.getProperty("db.port"));
-        connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        var url = props.getProperty("db.url");
+        urlIncludesDatabase = url != null;
+        if (urlIncludesDatabase) {
+            connectionUrl = url;
+        } else {
+            var host = props.getProperty("db.host");
+            var port = Integer.parseInt(props.getProperty("db.port"));
+            connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        }
+
+        // The factory keeps these settings even if the properties are loaded again
+        String poolUrl = connectionUrl;
+        String user = dbUsername;
+        String password = dbPassword;
+        String catalog = urlIncludesDatabase ? null : databaseName;
+        ConnectionPool old = pool;
+        pool = new ConnectionPool(() -> {
+            Connection conn = DriverManager.getConnection(poolUrl, user, password);
+            if (catalog != null) {
+                conn.setCatalog(catalog);
+            }
+            conn.setAutoCommit(true);
+            return conn;
+        }, ConnectionPool.Settings.fromProperties(props));
+        if (old != null) {
+            old.close();
+        }
     }
 
     private static void loadPropertiesFromResources() {
@@ -56,4 +98,4 @@ public class DatabaseManager {
             throw new RuntimeException("unable to process db.properties", ex);
         }
     }
-}
\ No newline at end of file
+}
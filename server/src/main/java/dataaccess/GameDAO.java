@@ -1,13 +1,74 @@
 package dataaccess;
 
+import chess.ChessGame;
 import model.GameData;
+import model.GameSummary;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface GameDAO {
 
     int createGame(GameData game) throws DataAccessException;
     GameData getGame(int gameID) throws DataAccessException;
     List<GameData> listGames() throws DataAccessException;
+
+    /**
+     * Lists games for the lobby in gameID order, without their game state
+     *
+     * @param statuses    statuses to include
+     * @param afterGameID only games with a larger gameID, for paging; 0 to start
+     * @param limit       games to return at most
+     */
+    default List<GameSummary> listSummaries(Set<GameSummary.Status> statuses, int afterGameID, int limit)
+            throws DataAccessException {
+        return listGames().stream()
+                .filter(game -> game.gameID() > afterGameID)
+                .map(GameSummary::of)
+                .filter(summary -> statuses.contains(summary.status()))
+                .sorted(Comparator.comparingInt(GameSummary::gameID))
+                .limit(limit)
+                .toList();
+    }
     void updateGame(int gameID, GameData updated) throws DataAccessException;
+
+    /**
+     * Replaces only the chess game and keeps the stored players, so a move cannot undo a
+     * seat taken meanwhile
+     */
+    default void updateChessGame(int gameID, ChessGame game) throws DataAccessException {
+        GameData stored = existing(gameID);
+        updateGame(gameID, new GameData(gameID, stored.whiteUsername(), stored.blackUsername(), stored.gameName(), game));
+    }
+
+    /**
+     * Sets one seat, null to empty it, and keeps the other seat and the stored chess game,
+     * so a join cannot undo a move made meanwhile
+     */
+    default void updatePlayer(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException {
+        GameData stored = existing(gameID);
+        updateGame(gameID, color == ChessGame.TeamColor.WHITE
+                ? new GameData(gameID, username, stored.blackUsername(), stored.gameName(), stored.game())
+                : new GameData(gameID, stored.whiteUsername(), username, stored.gameName(), stored.game()));
+    }
+
+    private GameData existing(int gameID) throws DataAccessException {
+        GameData stored = getGame(gameID);
+        if (stored == null) {
+            throw new DataAccessException("Error: game not found");
+        }
+        return stored;
+    }
+
+    /**
+     * Stores several games at once, keyed by gameID; by default one at a time
+     */
+    default void updateGames(Map<Integer, GameData> updates) throws DataAccessException {
+        for (var entry : updates.entrySet()) {
+            updateGame(entry.getKey(), entry.getValue());
+        }
+    }
+
     void clear() throws DataAccessException;
 }
\ No newline at end of file
@@ -2,14 +2,44 @@ package dataaccess;
 
 import com.google.gson.Gson;
 import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.PackedMove;
 import model.GameData;
+import model.GameSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import serialization.GsonFactory;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 
+/**
+ * Stores each game as a snapshot of its state in {@code game} plus an append-only log of
+ * the moves played since, one {@code game_move} row per ply, and keeps the indexed
+ * {@code status} column the lobby lists from up to date. A move costs one small
+ * INSERT; the snapshot is rewritten only every {@link #SNAPSHOT_INTERVAL} plies, when the
+ * game ends, or for changes that are not moves (joining, leaving). Loading a game reads
+ * its latest snapshot and replays the moves after it. The log keeps every move, so the
+ * full history stays available.
+ * <p>
+ * Logged moves are never deleted short of {@link #clear()}. The snapshot and every logged
+ * move keep the {@link ChessGame#positionKey()} they reached. A write is rejected as coming
+ * from an out-of-date copy if its game has fewer plies than the stored one, or if it did
+ * not pass through the stored game's latest position on the way.
+ */
 public class MySqlGameDAO implements GameDAO {
-    private final Gson gson = new Gson();
+    static final int SNAPSHOT_INTERVAL = 20;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MySqlGameDAO.class);
+
+    private enum Outcome { WRITTEN, NOT_FOUND, STALE }
+
+    private final Gson gson = GsonFactory.gson();
 
     public MySqlGameDAO() {
     }
@@ -17,10 +47,11 @@ public class MySqlGameDAO implements GameDAO {
 
     @Override
     public void clear() throws DataAccessException {
-        final String sql = "DELETE FROM game";
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
+             PreparedStatement moves = conn.prepareStatement("DELETE FROM game_move");
+             PreparedStatement games = conn.prepareStatement("DELETE FROM game")) {
+            moves.executeUpdate();
+            games.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error clearing games", e);
         }
@@ -29,13 +60,16 @@ public class MySqlGameDAO implements GameDAO {
 
     @Override
     public int createGame(GameData game) throws DataAccessException {
-        final String sql = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameState) VALUES (?,?,?,?)";
+        final String sql = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameState, snapshotPly, positionKey, status) VALUES (?,?,?,?,?,?,?)";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, game.whiteUsername());
             stmt.setString(2, game.blackUsername());
             stmt.setString(3, game.gameName());
             stmt.setString(4, gson.toJson(game.game()));
+            stmt.setInt(5, game.game().getPly());
+            stmt.setLong(6, game.game().positionKey());
+            stmt.setString(7, GameSummary.statusOf(game).name());
             stmt.executeUpdate();
             try (ResultSet rs = stmt.getGeneratedKeys()) {
                 if (rs.next()) {
@@ -52,21 +86,30 @@ public class MySqlGameDAO implements GameDAO {
 
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
-        final String sql = "SELECT whiteUsername, blackUsername, gameName, gameState FROM game WHERE gameID = ?";
+        final String sql = "SELECT whiteUsername, blackUsername, gameName, gameState, snapshotPly FROM game WHERE gameID = ?";
+        final String movesSql = "SELECT move FROM game_move WHERE gameID = ? AND ply > ? ORDER BY ply";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, gameID);
+            GameData snapshot;
+            int snapshotPly;
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
                     return null;
                 }
-                String white = rs.getString("whiteUsername");
-                String black = rs.getString("blackUsername");
-                String name  = rs.getString("gameName");
-                String state = rs.getString("gameState");
-                ChessGame chessGame = gson.fromJson(state, ChessGame.class);
-                return new GameData(gameID, white, black, name, chessGame);
+                snapshot = readSnapshot(gameID, rs);
+                snapshotPly = rs.getInt("snapshotPly");
             }
+            try (PreparedStatement moves = conn.prepareStatement(movesSql)) {
+                moves.setInt(1, gameID);
+                moves.setInt(2, snapshotPly);
+                try (ResultSet rs = moves.executeQuery()) {
+                    while (rs.next()) {
+                        replay(gameID, snapshot.game(), rs.getString("move"));
+                    }
+                }
+            }
+            return snapshot;
         } catch (SQLException e) {
             throw new DataAccessException("Error retrieving game", e);
         }
@@ -75,19 +118,30 @@ public class MySqlGameDAO implements GameDAO {
 
     @Override
     public List<GameData> listGames() throws DataAccessException {
-        final String sql = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM game";
+        final String sql = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState, snapshotPly FROM game";
+        final String movesSql = """
+                SELECT m.gameID, m.move FROM game_move m JOIN game g ON g.gameID = m.gameID
+                WHERE m.ply > g.snapshotPly ORDER BY m.gameID, m.ply""";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             List<GameData> games = new ArrayList<>();
+            Map<Integer, ChessGame> byID = new HashMap<>();
             while (rs.next()) {
-                int id = rs.getInt("gameID");
-                String white = rs.getString("whiteUsername");
-                String black = rs.getString("blackUsername");
-                String name  = rs.getString("gameName");
-                String state = rs.getString("gameState");
-                ChessGame chessGame = gson.fromJson(state, ChessGame.class);
-                games.add(new GameData(id, white, black, name, chessGame));
+                GameData game = readSnapshot(rs.getInt("gameID"), rs);
+                games.add(game);
+                byID.put(game.gameID(), game.game());
+            }
+            try (PreparedStatement moves = conn.prepareStatement(movesSql);
+                 ResultSet moveRows = moves.executeQuery()) {
+                while (moveRows.next()) {
+                    int id = moveRows.getInt("gameID");
+                    ChessGame game = byID.get(id);
+                    // A game created after the first query has no snapshot here
+                    if (game != null) {
+                        replay(id, game, moveRows.getString("move"));
+                    }
+                }
             }
             return games;
         } catch (SQLException e) {
@@ -95,22 +149,211 @@ public class MySqlGameDAO implements GameDAO {
         }
     }
 
-
+    /**
+     * Reads only the indexed lobby columns, never the game state
+     */
     @Override
-    public void updateGame(int gameID, GameData game) throws DataAccessException {
-        final String sql = "UPDATE game SET whiteUsername=?, blackUsername=?, gameState=? WHERE gameID=?";
+    public List<GameSummary> listSummaries(Set<GameSummary.Status> statuses, int afterGameID, int limit)
+            throws DataAccessException {
+        if (statuses.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String sql = "SELECT gameID, whiteUsername, blackUsername, gameName, status FROM game WHERE status IN ("
+                + "?,".repeat(statuses.size() - 1) + "?) AND gameID > ? ORDER BY gameID LIMIT ?";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, game.whiteUsername());
-            stmt.setString(2, game.blackUsername());
-            stmt.setString(3, gson.toJson(game.game()));
-            stmt.setInt(4, gameID);
-            int changed = stmt.executeUpdate();
-            if (changed == 0) {
-                throw new DataAccessException("Error: game not found");
+            int param = 1;
+            for (GameSummary.Status status : statuses) {
+                stmt.setString(param++, status.name());
+            }
+            stmt.setInt(param++, afterGameID);
+            stmt.setInt(param, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<GameSummary> games = new ArrayList<>();
+                while (rs.next()) {
+                    games.add(new GameSummary(
+                            rs.getInt("gameID"),
+                            rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"),
+                            rs.getString("gameName"),
+                            GameSummary.Status.valueOf(rs.getString("status"))));
+                }
+                return games;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error listing games", e);
+        }
+    }
+
+    private GameData readSnapshot(int gameID, ResultSet rs) throws SQLException {
+        String white = rs.getString("whiteUsername");
+        String black = rs.getString("blackUsername");
+        String name  = rs.getString("gameName");
+        ChessGame chessGame = gson.fromJson(rs.getString("gameState"), ChessGame.class);
+        chessGame.setPly(rs.getInt("snapshotPly"));
+        return new GameData(gameID, white, black, name, chessGame);
+    }
+
+    private static void replay(int gameID, ChessGame game, String move) throws DataAccessException {
+        try {
+            game.makeMove(PackedMove.toChessMove(PackedMove.parse(move)));
+        } catch (InvalidMoveException | IllegalArgumentException e) {
+            throw new DataAccessException("Error: stored move " + move + " does not apply to game " + gameID, e);
+        }
+    }
+
+
+    @Override
+    public void updateGame(int gameID, GameData game) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                switch (write(conn, gameID, game)) {
+                    case NOT_FOUND -> throw new DataAccessException("Error: game not found");
+                    case STALE -> throw new DataAccessException(
+                            "Error: game " + gameID + " has moves this update does not, or different ones");
+                    case WRITTEN -> conn.commit();
+                }
+            } catch (SQLException | DataAccessException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
             throw new DataAccessException("Error updating game", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes all the games in a single transaction; games that no longer exist, or that are
+     * behind or diverged from the stored game, are skipped so one bad game cannot hold back the others
+     */
+    @Override
+    public void updateGames(Map<Integer, GameData> updates) throws DataAccessException {
+        if (updates.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (var entry : updates.entrySet()) {
+                    if (write(conn, entry.getKey(), entry.getValue()) == Outcome.STALE) {
+                        LOG.warn("Skipped out-of-date write of game {}", entry.getKey());
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error updating games", e);
+        }
+    }
+
+    /**
+     * Appends the moves the stored game has not seen yet and rewrites the snapshot or the
+     * players if needed. Changes nothing if the game does not exist, the update has fewer
+     * plies than the stored game, or the update's game has a different position at the
+     * stored game's ply.
+     */
+    private Outcome write(Connection conn, int gameID, GameData data) throws SQLException {
+        final String stateSql = """
+                SELECT g.whiteUsername, g.blackUsername, g.snapshotPly, g.positionKey, g.status,
+                       (SELECT MAX(m.ply) FROM game_move m WHERE m.gameID = g.gameID) AS lastPly
+                FROM game g WHERE g.gameID = ? FOR UPDATE""";
+        String storedWhite;
+        String storedBlack;
+        String storedStatus;
+        int snapshotPly;
+        int storedPly;
+        Long storedKey;
+        try (PreparedStatement stmt = conn.prepareStatement(stateSql)) {
+            stmt.setInt(1, gameID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return Outcome.NOT_FOUND;
+                }
+                storedWhite = rs.getString("whiteUsername");
+                storedBlack = rs.getString("blackUsername");
+                storedStatus = rs.getString("status");
+                snapshotPly = rs.getInt("snapshotPly");
+                storedPly = Math.max(snapshotPly, rs.getInt("lastPly"));
+                storedKey = rs.getObject("positionKey", Long.class);
+            }
+        }
+        if (storedPly > snapshotPly) {
+            storedKey = loggedKey(conn, gameID, storedPly);
+        }
+
+        ChessGame game = data.game();
+        int ply = game.getPly();
+        if (ply < storedPly) {
+            // An out-of-date copy; writing it would replace moves already logged
+            return Outcome.STALE;
+        }
+        // A copy that diverged from the stored game, e.g. a lost update raced by another
+        // writer. Rows written before positions were kept have no key to compare.
+        if (storedKey != null && storedPly >= game.getFirstRecordedPly() - 1
+                && game.getPositionKey(storedPly) != storedKey) {
+            return Outcome.STALE;
+        }
+
+        // Moves between storedPly and the game's own history are unknown; the snapshot covers them
+        boolean gap = game.getFirstRecordedPly() > storedPly + 1;
+        int firstNew = Math.max(storedPly + 1, game.getFirstRecordedPly());
+        if (firstNew <= ply) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO game_move (gameID, ply, move, positionKey) VALUES (?,?,?,?)")) {
+                for (int p = firstNew; p <= ply; p++) {
+                    stmt.setInt(1, gameID);
+                    stmt.setInt(2, p);
+                    stmt.setString(3, PackedMove.toString(game.getMove(p)));
+                    stmt.setLong(4, game.getPositionKey(p));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        String status = GameSummary.statusOf(data).name();
+        boolean snapshot = firstNew > ply || gap || game.isGameOver() || ply - snapshotPly >= SNAPSHOT_INTERVAL;
+        if (snapshot) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE game SET whiteUsername=?, blackUsername=?, gameState=?, snapshotPly=?, positionKey=?, status=? WHERE gameID=?")) {
+                stmt.setString(1, data.whiteUsername());
+                stmt.setString(2, data.blackUsername());
+                stmt.setString(3, gson.toJson(game));
+                stmt.setInt(4, ply);
+                stmt.setLong(5, game.positionKey());
+                stmt.setString(6, status);
+                stmt.setInt(7, gameID);
+                stmt.executeUpdate();
+            }
+        } else if (!Objects.equals(storedWhite, data.whiteUsername()) || !Objects.equals(storedBlack, data.blackUsername())
+                || !status.equals(storedStatus)) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE game SET whiteUsername=?, blackUsername=?, status=? WHERE gameID=?")) {
+                stmt.setString(1, data.whiteUsername());
+                stmt.setString(2, data.blackUsername());
+                stmt.setString(3, status);
+                stmt.setInt(4, gameID);
+                stmt.executeUpdate();
+            }
+        }
+        return Outcome.WRITTEN;
+    }
+
+    private static Long loggedKey(Connection conn, int gameID, int ply) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT positionKey FROM game_move WHERE gameID = ? AND ply = ?")) {
+            stmt.setInt(1, gameID);
+            stmt.setInt(2, ply);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getObject("positionKey", Long.class) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package dataaccess;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what a {@link ConnectionPool} has done: borrows and how long they waited,
+ * connections opened and closed, and the failures worth alerting on. The pool itself
+ * reports how many connections are in use and idle right now.
+ */
+public class PoolMetrics {
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    void recordBorrow(long waitedNanos) {
+        borrows.increment();
+        waitNanos.add(waitedNanos);
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    void recordCreated() {
+        created.increment();
+    }
+
+    void recordClosed() {
+        closed.increment();
+    }
+
+    void recordValidationFailure() {
+        validationFailures.increment();
+    }
+
+    void recordLeak() {
+        leaks.increment();
+    }
+
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    /**
+     * @return mean time a successful borrow waited for a connection, including opening it
+     */
+    public double averageWaitMillis() {
+        long count = borrows.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1e6 / count;
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public long connectionsCreated() {
+        return created.sum();
+    }
+
+    public long connectionsClosed() {
+        return closed.sum();
+    }
+
+    public long validationFailures() {
+        return validationFailures.sum();
+    }
+
+    /**
+     * @return connections held past the leak detection threshold
+     */
+    public long leaks() {
+        return leaks.sum();
+    }
+}
@@ -3,27 +3,31 @@ package server;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import dataaccess.DataAccessException;
-import model.GameData;
+import model.AuthData;
+import model.GameSummary;
 import service.GameService;
 import service.exceptions.AlreadyTakenException;
 import service.exceptions.NotFoundException;
-import service.exceptions.UnauthorizedException;
 import service.requests.CreateGameRequest;
 import service.requests.JoinGameRequest;
+import service.requests.ListGamesRequest;
 import service.results.CreateGameResult;
-import service.results.ListGamesResult;
+import service.results.ListLobbyResult;
 import spark.Request;
 import spark.Response;
 
-import java.util.List;
+import java.util.EnumSet;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import static spark.Spark.get;
 import static spark.Spark.post;
 import static spark.Spark.put;
 
 public class GameHandler {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final GameService gameService;
     private final Gson gson;
 
@@ -39,8 +43,8 @@ public class GameHandler {
     }
 
     private Object handleCreateGame(Request req, Response res) {
-        String token = req.headers("authorization");
-        if (token == null || token.isBlank()) {
+        AuthData auth = req.attribute(Server.AUTH_ATTRIBUTE);
+        if (auth == null) {
             res.status(401);
             return errorBody("unauthorized");
         }
@@ -58,14 +62,10 @@ public class GameHandler {
         }
 
         try {
-            CreateGameResult result = gameService.createGame(createReq, token);
+            CreateGameResult result = gameService.createGame(createReq, auth);
             res.status(200);
             return gson.toJson(result);
 
-        } catch (UnauthorizedException e) {
-            res.status(401);
-            return errorBody("unauthorized");
-
         } catch (DataAccessException e) {
             return mapDataAccessError(res, e);
 
@@ -75,23 +75,37 @@ public class GameHandler {
         }
     }
 
+    /**
+     * Lists the lobby a page at a time. Optional query parameters: status (open,
+     * in_progress, finished, active or all; default active, i.e. not finished), after (the
+     * next value of the previous page) and limit (default 100, at most 500).
+     */
     private Object handleListGames(Request req, Response res) {
-        String token = req.headers("authorization");
-        if (token == null || token.isBlank()) {
+        AuthData auth = req.attribute(Server.AUTH_ATTRIBUTE);
+        if (auth == null) {
             res.status(401);
             return errorBody("unauthorized");
         }
 
+        ListGamesRequest listReq;
         try {
-            ListGamesResult result = gameService.listGames(token);
-
-            //build new list not including games that are over
-            List<GameData> active = result.games().stream()
-                    .filter(g -> !g.game().isGameOver())
-                    .collect(Collectors.toList());
+            listReq = new ListGamesRequest(
+                    parseStatuses(req.queryParams("status")),
+                    parseInt(req.queryParams("after"), 0),
+                    Math.min(parseInt(req.queryParams("limit"), DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE));
+        } catch (IllegalArgumentException e) {
+            res.status(400);
+            return errorBody("bad request");
+        }
+        if (listReq.afterGameID() < 0 || listReq.limit() < 1) {
+            res.status(400);
+            return errorBody("bad request");
+        }
 
+        try {
+            ListLobbyResult result = gameService.listLobby(listReq, auth);
             res.status(200);
-            return gson.toJson(new ListGamesResult(active));
+            return gson.toJson(result);
 
         } catch (DataAccessException e) {
             return mapDataAccessError(res, e);
@@ -102,9 +116,27 @@ public class GameHandler {
         }
     }
 
+    private static Set<GameSummary.Status> parseStatuses(String status) {
+        if (status == null || status.isBlank()) {
+            status = "active";
+        }
+        return switch (status.toLowerCase()) {
+            case "open" -> EnumSet.of(GameSummary.Status.OPEN);
+            case "in_progress" -> EnumSet.of(GameSummary.Status.IN_PROGRESS);
+            case "finished" -> EnumSet.of(GameSummary.Status.FINISHED);
+            case "active" -> EnumSet.of(GameSummary.Status.OPEN, GameSummary.Status.IN_PROGRESS);
+            case "all" -> EnumSet.allOf(GameSummary.Status.class);
+            default -> throw new IllegalArgumentException("Unknown status: " + status);
+        };
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
     private Object handleJoinGame(Request req, Response res) {
-        String token = req.headers("authorization");
-        if (token == null || token.isBlank()) {
+        AuthData auth = req.attribute(Server.AUTH_ATTRIBUTE);
+        if (auth == null) {
             res.status(401);
             return errorBody("unauthorized");
         }
@@ -122,7 +154,7 @@ public class GameHandler {
         }
 
         try {
-            gameService.joinGame(joinReq, token);
+            gameService.joinGame(joinReq, auth);
             res.status(200);
             return "{}";
 
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import dataaccess.*;
 import dataaccess.AuthDAO;
 import dataaccess.GameDAO;
+import serialization.GsonFactory;
 import service.AuthService;
 import service.UserService;
 import service.GameService;
@@ -17,17 +18,24 @@ import java.util.Map;
 import static spark.Spark.*;
 
 public class Server {
+    /** Request attribute holding the {@link model.AuthData} the before filter resolved */
+    static final String AUTH_ATTRIBUTE = "auth";
+
     private final Gson gson;
     private final AuthService authService;
     private final UserService userService;
     private final GameService gameService;
     private final DBService databaseService;
+    private final CachingGameDAO gameDao;
+    private final AuthDAO authDao;
 
     public Server() {
-        this.gson            = new Gson();
+        this.gson            = GsonFactory.gson();
         UserDAO userDao      = new MySqlUserDAO();
-        AuthDAO authDao      = new MySqlAuthDAO();
-        GameDAO gameDao      = new MySqlGameDAO();
+        // Shared so a token removed on logout is dropped from the one cache everyone reads
+        this.authDao         = new CachingAuthDAO(new MySqlAuthDAO());
+        // Shared by HTTP and WebSocket handlers so both see the same cached games
+        this.gameDao         = new CachingGameDAO(new MySqlGameDAO());
         this.authService     = new AuthService(authDao);
         this.userService     = new UserService(userDao, authDao);
         this.gameService     = new GameService(gameDao, authDao);
@@ -44,7 +52,7 @@ public class Server {
 
         port(desiredPort);
 
-        webSocket("/ws", server.websocket.WebSocketHandler.class);
+        webSocket("/ws", new server.websocket.WebSocketHandler(gameDao, authDao));
         staticFiles.location("web");
 
         System.out.println("Registering WebSocket");
@@ -89,7 +97,8 @@ public class Server {
             }
 
             try {
-                authService.validateToken(token);
+                // Handlers take the caller from here instead of looking the token up again
+                req.attribute(AUTH_ATTRIBUTE, authService.validateToken(token));
             } catch (UnauthorizedException ue) {
                 halt(401, gson.toJson(Map.of("message", "Error: unauthorized")));
             }
@@ -114,5 +123,9 @@ public class Server {
 
     public void stop() {
         Spark.stop();
+        // Stopping is asynchronous; a server started next in this JVM must find Spark stopped
+        Spark.awaitStop();
+        // Write back moves still waiting in the game cache
+        gameDao.close();
     }
 }
@@ -1,21 +1,149 @@
 package server.websocket;
 
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import websocket.messages.ServerMessage;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 
+/**
+ * One session's membership in a game, with its own outbound queue.
+ * <p>
+ * Messages are written with Jetty's asynchronous send, one at a time, so the thread
+ * handling a move only ever enqueues and a slow client holds up nobody else. When the
+ * queue is full the overflow policy decides what gives.
+ */
 public class Connection {
-    public String username;
-    public Session session;
 
-    public Connection(String username, Session session) {
+    public enum OverflowPolicy {
+        /**
+         * Drop queued LOAD_GAME messages that a newer board supersedes, and disconnect
+         * only if that frees no room
+         */
+        COALESCE_LOAD_GAME,
+        /**
+         * Disconnect the client as soon as its queue is full
+         */
+        DISCONNECT
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    public final int gameID;
+    public final String username;
+    public final Session session;
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final MessageMetrics metrics;
+
+    private final ArrayDeque<EncodedMessage> queue = new ArrayDeque<>();
+    private boolean writing;
+    private boolean closed;
+
+    public Connection(int gameID, String username, Session session, int capacity, OverflowPolicy policy,
+                      MessageMetrics metrics) {
+        this.gameID = gameID;
         this.username = username;
         this.session = session;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a message without blocking
+     *
+     * @return False if the connection is closed, or was just closed for falling too far behind
+     */
+    public boolean send(EncodedMessage message) {
+        boolean overflowed = false;
+        synchronized (queue) {
+            if (closed || !session.isOpen()) {
+                return false;
+            }
+            if (!writing) {
+                writing = true;
+            } else if (queue.size() < capacity || makeRoom(message)) {
+                queue.add(message);
+                return true;
+            } else {
+                closed = true;
+                overflowed = true;
+                queue.clear();
+            }
+        }
+        if (overflowed) {
+            metrics.recordDisconnect();
+            session.close(StatusCode.POLICY_VIOLATION, "Client is not keeping up with game updates");
+            return false;
+        }
+        write(message);
+        return true;
+    }
+
+    /**
+     * @return True if there is now room in the queue for message
+     */
+    private boolean makeRoom(EncodedMessage message) {
+        if (policy != OverflowPolicy.COALESCE_LOAD_GAME) {
+            return false;
+        }
+        boolean incomingBoard = message.type() == ServerMessage.ServerMessageType.LOAD_GAME;
+        // An incoming board replaces every queued one; otherwise keep only the newest queued board
+        boolean keptNewest = incomingBoard;
+        Iterator<EncodedMessage> newestFirst = queue.descendingIterator();
+        while (newestFirst.hasNext()) {
+            if (newestFirst.next().type() == ServerMessage.ServerMessageType.LOAD_GAME) {
+                if (keptNewest) {
+                    newestFirst.remove();
+                    metrics.recordCoalesced();
+                } else {
+                    keptNewest = true;
+                }
+            }
+        }
+        return queue.size() < capacity;
+    }
+
+    private void write(EncodedMessage message) {
+        metrics.recordSent(message);
+        session.getRemote().sendString(message.payload(), new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                writeNext();
+            }
+
+            @Override
+            public void writeFailed(Throwable error) {
+                synchronized (queue) {
+                    closed = true;
+                    queue.clear();
+                }
+            }
+        });
+    }
+
+    private void writeNext() {
+        EncodedMessage next;
+        synchronized (queue) {
+            next = closed ? null : queue.poll();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(next);
     }
 
-    public void send(String message) throws IOException {
-        if (session.isOpen()) {
-            session.getRemote().sendString(message);
+    /**
+     * @return number of messages waiting behind the one being written
+     */
+    public int queued() {
+        synchronized (queue) {
+            return queue.size();
         }
     }
 }
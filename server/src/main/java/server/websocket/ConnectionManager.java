@@ -1,55 +1,146 @@
 package server.websocket;
 
-import com.google.gson.Gson;
 import org.eclipse.jetty.websocket.api.Session;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Tracks the sessions connected to each game. Every outgoing message is serialized once
+ * into an {@link EncodedMessage} and the same payload is queued on each recipient's
+ * {@link Connection}, which writes it asynchronously, so sending never waits on a client.
+ * <p>
+ * Besides the per-game maps, connections are indexed by session so that closing a
+ * session never scans other games. Changes to both maps happen under this object's
+ * lock so they stay consistent; sends only read them.
+ */
 public class ConnectionManager {
 
     private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, Connection>> gameConnections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Session, Set<Connection>> sessionConnections = new ConcurrentHashMap<>();
+    private final MessageMetrics metrics = new MessageMetrics();
+    private final int queueCapacity;
+    private final Connection.OverflowPolicy overflowPolicy;
 
-    public void add(int gameID, String username, Session session) {
-        var gameMap = gameConnections.computeIfAbsent(gameID, k -> new ConcurrentHashMap<>());
-        gameMap.put(username, new Connection(username, session));
+    public ConnectionManager() {
+        this(Connection.DEFAULT_QUEUE_CAPACITY, Connection.OverflowPolicy.COALESCE_LOAD_GAME);
     }
 
-    public void remove(int gameID, String username) {
+    /**
+     * @param queueCapacity  messages each connection may have waiting before the policy applies
+     * @param overflowPolicy what to do with a client whose queue is full
+     */
+    public ConnectionManager(int queueCapacity, Connection.OverflowPolicy overflowPolicy) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public synchronized void add(int gameID, String username, Session session) {
+        var conn = new Connection(gameID, username, session, queueCapacity, overflowPolicy, metrics);
+        var replaced = gameConnections.computeIfAbsent(gameID, k -> new ConcurrentHashMap<>()).put(username, conn);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        sessionConnections.computeIfAbsent(session, k -> ConcurrentHashMap.newKeySet()).add(conn);
+    }
+
+    public synchronized void remove(int gameID, String username) {
         var gameMap = gameConnections.get(gameID);
         if (gameMap != null) {
-            gameMap.remove(username);
+            var conn = gameMap.get(username);
+            if (conn != null) {
+                removeConnection(conn);
+            }
+        }
+    }
+
+    public synchronized void removeSession(Session session) {
+        var connections = sessionConnections.get(session);
+        if (connections == null) {
+            return;
+        }
+        for (var conn : new ArrayList<>(connections)) {
+            removeConnection(conn);
+        }
+    }
+
+    private void removeConnection(Connection conn) {
+        var gameMap = gameConnections.get(conn.gameID);
+        if (gameMap != null && gameMap.remove(conn.username, conn) && gameMap.isEmpty()) {
+            gameConnections.remove(conn.gameID, gameMap);
         }
+        unindex(conn);
     }
 
-    public void sendTo(String username, ServerMessage message) throws IOException {
-        for (var gameMap : gameConnections.values()) {
-            if (gameMap.containsKey(username)) {
-                gameMap.get(username).send(new Gson().toJson(message));
+    private void unindex(Connection conn) {
+        var connections = sessionConnections.get(conn.session);
+        if (connections != null && connections.remove(conn) && connections.isEmpty()) {
+            sessionConnections.remove(conn.session, connections);
+        }
+    }
+
+    public EncodedMessage encode(ServerMessage message) {
+        EncodedMessage encoded = EncodedMessage.encode(message);
+        metrics.recordEncoded(encoded);
+        return encoded;
+    }
+
+    /**
+     * Sends to the user's connection to one game
+     */
+    public void sendTo(int gameID, String username, ServerMessage message) throws IOException {
+        var gameMap = gameConnections.get(gameID);
+        var conn = gameMap != null ? gameMap.get(username) : null;
+        if (conn != null) {
+            conn.send(encode(message));
+        }
+    }
+
+    /**
+     * Sends to a session whether or not it has joined a game, e.g. for errors. A session
+     * that has joined one goes through its connection's queue, so the message cannot
+     * overtake or collide with writes already in flight.
+     */
+    public void send(Session session, ServerMessage message) throws IOException {
+        EncodedMessage encoded = encode(message);
+        var connections = sessionConnections.get(session);
+        if (connections != null) {
+            for (var conn : connections) {
+                conn.send(encoded);
                 return;
             }
         }
+        if (session.isOpen()) {
+            session.getRemote().sendString(encoded.payload());
+            metrics.recordSent(encoded);
+        }
     }
 
     public void broadcast(int gameID, String excludeUsername, ServerMessage message) throws IOException {
         var gameMap = gameConnections.get(gameID);
         if (gameMap == null) {return;}
 
-        var removeList = new ArrayList<String>();
+        var encoded = encode(message);
+        var removeList = new ArrayList<Connection>();
         for (var entry : gameMap.entrySet()) {
             var conn = entry.getValue();
             if (!conn.session.isOpen()) {
-                removeList.add(entry.getKey());
+                removeList.add(conn);
                 continue;
             }
             if (!entry.getKey().equals(excludeUsername)) {
-                conn.send(new Gson().toJson(message));
+                conn.send(encoded);
             }
         }
-        for (var user : removeList) {
-            gameMap.remove(user);
+        if (!removeList.isEmpty()) {
+            synchronized (this) {
+                for (var conn : removeList) {
+                    removeConnection(conn);
+                }
+            }
         }
     }
 
@@ -57,9 +148,7 @@ public class ConnectionManager {
         broadcast(gameID, null, message);
     }
 
-    public void removeSession(Session session) {
-        for (var gameMap : gameConnections.values()) {
-            gameMap.entrySet().removeIf(entry -> entry.getValue().session.equals(session));
-        }
+    public MessageMetrics getMetrics() {
+        return metrics;
     }
 }
@@ -0,0 +1,34 @@
+package server.websocket;
+
+import serialization.GsonFactory;
+import websocket.messages.ServerMessage;
+
+/**
+ * A server message serialized once so it can be sent to any number of sessions
+ *
+ * @param type    the message type, for metrics
+ * @param payload the JSON text sent on the wire
+ * @param size    length of the payload in UTF-8 bytes
+ */
+public record EncodedMessage(ServerMessage.ServerMessageType type, String payload, int size) {
+
+    public static EncodedMessage encode(ServerMessage message) {
+        String payload = GsonFactory.gson().toJson(message);
+        return new EncodedMessage(message.getServerMessageType(), payload, utf8Length(payload));
+    }
+
+    private static int utf8Length(String text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // Surrogate pairs are 4 bytes for 2 chars, everything else 3 bytes for 1
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,67 @@
+package server.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single writer for one game. Commands for the game are queued in its mailbox and run
+ * one at a time, in arrival order, so they never race each other; different games have
+ * different actors and run in parallel.
+ * <p>
+ * The actor holds no copy of the game: each command reads it from the game DAO, which
+ * keeps games in play in memory, and writes back only the fields it changed. Seats taken
+ * over HTTP do not go through the actor, so a copy held here could overwrite them.
+ */
+public class GameActor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameActor.class);
+
+    private final int gameID;
+    private final GameActors registry;
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    GameActor(int gameID, GameActors registry) {
+        this.gameID = gameID;
+        this.registry = registry;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    void enqueue(Runnable task) {
+        mailbox.add(task);
+        if (running.compareAndSet(false, true)) {
+            registry.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            while ((task = mailbox.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    // One bad command must not stop the game's later commands
+                    LOG.error("Command for game {} failed", gameID, ex);
+                }
+            }
+            running.set(false);
+            // A task queued after the last poll but before running was cleared found the actor busy
+            if (mailbox.isEmpty() || !running.compareAndSet(false, true)) {
+                break;
+            }
+        }
+        registry.removeIfIdle(this);
+    }
+
+    boolean isIdle() {
+        return mailbox.isEmpty() && !running.get();
+    }
+}
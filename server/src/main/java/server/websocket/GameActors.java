@@ -0,0 +1,46 @@
+package server.websocket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the {@link GameActor} for a game on demand and drops it once it is idle.
+ * Mailboxes are drained on virtual threads, so a waiting database call costs no
+ * platform thread and every active game can make progress at once.
+ */
+public class GameActors {
+
+    private final ConcurrentHashMap<Integer, GameActor> actors = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Queues a task on the game's actor. Tasks for one game run one at a time in the order
+     * they were submitted. A task that throws is logged and the next one runs.
+     */
+    public void submit(int gameID, Runnable task) {
+        // compute runs atomically for the key, so an actor cannot be removed between lookup and enqueue
+        actors.compute(gameID, (id, actor) -> {
+            if (actor == null) {
+                actor = new GameActor(id, this);
+            }
+            actor.enqueue(task);
+            return actor;
+        });
+    }
+
+    void execute(Runnable drain) {
+        executor.execute(drain);
+    }
+
+    void removeIfIdle(GameActor actor) {
+        actors.computeIfPresent(actor.getGameID(), (id, current) -> current == actor && actor.isIdle() ? null : current);
+    }
+
+    /**
+     * @return number of games with an actor, for monitoring
+     */
+    public int size() {
+        return actors.size();
+    }
+}
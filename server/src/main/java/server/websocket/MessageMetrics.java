@@ -0,0 +1,90 @@
+package server.websocket;
+
+import websocket.messages.ServerMessage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts WebSocket traffic per message type: how many messages were serialized and how
+ * large they were, and how many frames and bytes went out after fan-out. Also counts
+ * what slow clients cost: boards coalesced away and clients disconnected.
+ */
+public class MessageMetrics {
+
+    private static final ServerMessage.ServerMessageType[] TYPES = ServerMessage.ServerMessageType.values();
+
+    private final LongAdder[] encoded = adders();
+    private final LongAdder[] encodedBytes = adders();
+    private final LongAdder[] sent = adders();
+    private final LongAdder[] sentBytes = adders();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[TYPES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void recordEncoded(EncodedMessage message) {
+        encoded[message.type().ordinal()].increment();
+        encodedBytes[message.type().ordinal()].add(message.size());
+    }
+
+    void recordSent(EncodedMessage message) {
+        sent[message.type().ordinal()].increment();
+        sentBytes[message.type().ordinal()].add(message.size());
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordDisconnect() {
+        disconnects.increment();
+    }
+
+    public long messagesEncoded(ServerMessage.ServerMessageType type) {
+        return encoded[type.ordinal()].sum();
+    }
+
+    public long bytesEncoded(ServerMessage.ServerMessageType type) {
+        return encodedBytes[type.ordinal()].sum();
+    }
+
+    public long framesSent(ServerMessage.ServerMessageType type) {
+        return sent[type.ordinal()].sum();
+    }
+
+    public long bytesSent(ServerMessage.ServerMessageType type) {
+        return sentBytes[type.ordinal()].sum();
+    }
+
+    /**
+     * @return queued LOAD_GAME messages dropped because a newer board replaced them
+     */
+    public long loadGamesCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return clients disconnected because their outbound queue overflowed
+     */
+    public long slowClientDisconnects() {
+        return disconnects.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MessageMetrics{");
+        for (ServerMessage.ServerMessageType type : TYPES) {
+            sb.append(type).append(": encoded=").append(messagesEncoded(type))
+                    .append('/').append(bytesEncoded(type)).append("B sent=").append(framesSent(type))
+                    .append('/').append(bytesSent(type)).append("B; ");
+        }
+        return sb.append("coalesced=").append(loadGamesCoalesced())
+                .append(" disconnects=").append(slowClientDisconnects()).append('}').toString();
+    }
+}
@@ -3,14 +3,17 @@ package server.websocket;
 import chess.ChessGame;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.GameStatus;
 import com.google.gson.Gson;
 import dataaccess.*;
-import model.GameData;
+import serialization.GsonFactory;
 import websocket.commands.*;
 import websocket.messages.*;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 import java.io.IOException;
@@ -18,32 +21,53 @@ import java.io.IOException;
 @WebSocket
 public class WebSocketHandler {
 
+    private static final Logger LOG = LoggerFactory.getLogger(WebSocketHandler.class);
     private static final ConnectionManager CONNECTIONS = new ConnectionManager();
-    private static final GameDAO GAME_DAO = new MySqlGameDAO();
-    private static final AuthDAO AUTH_DAO = new MySqlAuthDAO();
-    private static final Gson GSON = new Gson();
+    private static final GameActors ACTORS = new GameActors();
+    private static final Gson GSON = GsonFactory.gson();
 
-    private Session session;
+    private final GameDAO gameDAO;
+    private final AuthDAO authDAO;
 
-    @OnWebSocketConnect
-    public void onConnect(Session session) {
-        this.session = session;
+    @FunctionalInterface
+    private interface GameCommand {
+        void handle() throws IOException, DataAccessException;
     }
 
+    /**
+     * One handler serves every socket, so it must share the server's DAOs
+     */
+    public WebSocketHandler(GameDAO gameDAO, AuthDAO authDAO) {
+        this.gameDAO = gameDAO;
+        this.authDAO = authDAO;
+    }
+
+    /**
+     * Parses the command on the socket's thread and queues it on its game's actor, so
+     * commands for one game run in order while different games run in parallel
+     */
     @OnWebSocketMessage
-    public void onMessage(Session session, String text) throws IOException {
-        try {
-            UserGameCommand baseCommand = GSON.fromJson(text, UserGameCommand.class);
-
-            switch (baseCommand.getCommandType()) {
-                case CONNECT ->    handleConnect(session, GSON.fromJson(text, ConnectCommand.class));
-                case MAKE_MOVE ->  handleMakeMove(session, GSON.fromJson(text, MakeMoveCommand.class));
-                case LEAVE ->      handleLeave(session, GSON.fromJson(text, LeaveCommand.class));
-                case RESIGN ->     handleResign(session, GSON.fromJson(text, ResignCommand.class));
-                default -> throw new IllegalStateException("Unknown commandType: " + baseCommand.getCommandType());
+    public void onMessage(Session session, String text) {
+        UserGameCommand baseCommand = GSON.fromJson(text, UserGameCommand.class);
+
+        switch (baseCommand.getCommandType()) {
+            case CONNECT -> {
+                var cmd = GSON.fromJson(text, ConnectCommand.class);
+                submit(session, cmd.getGameID(), () -> handleConnect(session, cmd));
+            }
+            case MAKE_MOVE -> {
+                var cmd = GSON.fromJson(text, MakeMoveCommand.class);
+                submit(session, cmd.getGameID(), () -> handleMakeMove(session, cmd));
             }
-        }  catch (DataAccessException dae) {
-            sendError(session, "Error: " + dae.getMessage());
+            case LEAVE -> {
+                var cmd = GSON.fromJson(text, LeaveCommand.class);
+                submit(session, cmd.getGameID(), () -> handleLeave(session, cmd));
+            }
+            case RESIGN -> {
+                var cmd = GSON.fromJson(text, ResignCommand.class);
+                submit(session, cmd.getGameID(), () -> handleResign(session, cmd));
+            }
+            default -> throw new IllegalStateException("Unknown commandType: " + baseCommand.getCommandType());
         }
     }
 
@@ -54,12 +78,27 @@ public class WebSocketHandler {
     }
 
 
+    private void submit(Session session, int gameID, GameCommand command) {
+        ACTORS.submit(gameID, () -> {
+            try {
+                command.handle();
+            } catch (DataAccessException dae) {
+                sendErrorQuietly(session, "Error: " + dae.getMessage());
+            } catch (IOException ex) {
+                // The client went away; there is nobody left to tell
+            } catch (RuntimeException ex) {
+                LOG.error("Command for game {} failed", gameID, ex);
+                sendErrorQuietly(session, "Error: internal error");
+            }
+        });
+    }
+
 
     private void handleConnect(Session session, ConnectCommand cmd)
             throws IOException, DataAccessException {
-        var auth     = AUTH_DAO.getAuth(cmd.getAuthToken());
+        var auth     = authDAO.getAuth(cmd.getAuthToken());
         String user  = auth != null ? auth.username() : null;
-        var gameData = GAME_DAO.getGame(cmd.getGameID());
+        var gameData = gameDAO.getGame(cmd.getGameID());
         if (user == null || gameData == null) {
             sendError(session, "Error: invalid auth or game ID");
             return;
@@ -67,7 +106,7 @@ public class WebSocketHandler {
 
         CONNECTIONS.add(cmd.getGameID(), user, session);
 
-        CONNECTIONS.sendTo(user, new LoadGameMessage(gameData));
+        CONNECTIONS.sendTo(cmd.getGameID(), user, new LoadGameMessage(gameData));
 
 
         boolean isPlayer = user.equals(gameData.whiteUsername())
@@ -86,9 +125,9 @@ public class WebSocketHandler {
     private void handleMakeMove(Session session, MakeMoveCommand cmd)
             throws IOException, DataAccessException {
 
-        var auth = AUTH_DAO.getAuth(cmd.getAuthToken());
+        var auth = authDAO.getAuth(cmd.getAuthToken());
         String user = auth != null ? auth.username() : null;
-        var gameData = GAME_DAO.getGame(cmd.getGameID());
+        var gameData = gameDAO.getGame(cmd.getGameID());
         if (user == null || gameData == null) {
             sendError(session, "Error: invalid auth or game ID");
             return;
@@ -129,27 +168,28 @@ public class WebSocketHandler {
             return;
         }
 
-        GAME_DAO.updateGame(cmd.getGameID(), gameData);
-
-        String moveMessage = String.format("%s moved %s from %s to %s", user, piece, start, end);
-
-        CONNECTIONS.broadcastAll(cmd.getGameID(), new LoadGameMessage(gameData));
-        CONNECTIONS.broadcast(cmd.getGameID(), user,
-                new NotificationMessage(moveMessage));
-
-
         ChessGame.TeamColor opponent = (userColor == ChessGame.TeamColor.WHITE)
                 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        GameStatus status = game.evaluateStatus(opponent);
         String finalNotify = null;
-        if (game.isInCheckmate(opponent)) {
-            game.setGameOver(true);
+        if (status.isCheckmate()) {
             finalNotify = user + " checkmated opponent";
-        } else if (game.isInStalemate(opponent)) {
-            game.setGameOver(true);
+        } else if (status.isStalemate()) {
             finalNotify = "Stalemate";
-        } else if (game.isInCheck(opponent)) {
+        } else if (status.inCheck()) {
             finalNotify = user + " put opponent in check";
         }
+        // Decide game over before saving so the stored game and the LOAD_GAME agree
+        game.setGameOver(status.isGameOver());
+
+        gameDAO.updateChessGame(cmd.getGameID(), game);
+
+        String moveMessage = String.format("%s moved %s from %s to %s", user, piece, start, end);
+
+        CONNECTIONS.broadcastAll(cmd.getGameID(), new LoadGameMessage(gameData));
+        CONNECTIONS.broadcast(cmd.getGameID(), user,
+                new NotificationMessage(moveMessage));
+
         if (finalNotify != null) {
             CONNECTIONS.broadcast(cmd.getGameID(), null,
                     new NotificationMessage(finalNotify));
@@ -158,37 +198,18 @@ public class WebSocketHandler {
 
 
     private void handleLeave(Session session, LeaveCommand cmd) throws IOException, DataAccessException {
-        var auth = AUTH_DAO.getAuth(cmd.getAuthToken());
+        var auth = authDAO.getAuth(cmd.getAuthToken());
         String user = auth != null ? auth.username() : null;
-        var gameData = GAME_DAO.getGame(cmd.getGameID());
+        var gameData = gameDAO.getGame(cmd.getGameID());
         if (user == null || gameData == null) {
             sendError(session, "Error: invalid auth or game ID");
             return;
         }
 
-        boolean wasPlayer = false;
         if (user.equals(gameData.whiteUsername())) {
-            gameData = new GameData(
-                    gameData.gameID(),
-                    null,
-                    gameData.blackUsername(),
-                    gameData.gameName(),
-                    gameData.game()
-            );
-            wasPlayer = true;
+            gameDAO.updatePlayer(cmd.getGameID(), ChessGame.TeamColor.WHITE, null);
         } else if (user.equals(gameData.blackUsername())) {
-            gameData = new GameData(
-                    gameData.gameID(),
-                    gameData.whiteUsername(),
-                    null,
-                    gameData.gameName(),
-                    gameData.game()
-            );
-            wasPlayer = true;
-        }
-
-        if (wasPlayer) {
-            GAME_DAO.updateGame(cmd.getGameID(), gameData);
+            gameDAO.updatePlayer(cmd.getGameID(), ChessGame.TeamColor.BLACK, null);
         }
 
 
@@ -199,9 +220,9 @@ public class WebSocketHandler {
     }
 
     private void handleResign(Session session, ResignCommand cmd) throws IOException, DataAccessException {
-        var auth = AUTH_DAO.getAuth(cmd.getAuthToken());
+        var auth = authDAO.getAuth(cmd.getAuthToken());
         String user = auth != null ? auth.username() : null;
-        var gameData = GAME_DAO.getGame(cmd.getGameID());
+        var gameData = gameDAO.getGame(cmd.getGameID());
         if (user == null || gameData == null) {
             sendError(session, "Error: invalid auth or game ID");
             return;
@@ -220,13 +241,29 @@ public class WebSocketHandler {
         }
 
         game.setGameOver(true);
-        GAME_DAO.updateGame(cmd.getGameID(), gameData);
+        gameDAO.updateChessGame(cmd.getGameID(), game);
 
         CONNECTIONS.broadcastAll(cmd.getGameID(), new NotificationMessage(user + " resigned"));
     }
 
 
+    /**
+     * @return counts and sizes of the messages sent to WebSocket clients
+     */
+    public static MessageMetrics getMetrics() {
+        return CONNECTIONS.getMetrics();
+    }
+
+
     private void sendError(Session session, String msg) throws IOException {
-        session.getRemote().sendString(GSON.toJson(new ErrorMessage(msg)));
+        CONNECTIONS.send(session, new ErrorMessage(msg));
+    }
+
+    private void sendErrorQuietly(Session session, String msg) {
+        try {
+            sendError(session, msg);
+        } catch (IOException ex) {
+            // The client went away; there is nobody left to tell
+        }
     }
 }
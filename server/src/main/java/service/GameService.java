@@ -11,6 +11,7 @@ import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import model.GameData;
 import model.AuthData;
+import model.GameSummary;
 
 import java.util.*;
 
@@ -29,7 +30,15 @@ public class GameService {
             throws UnauthorizedException, DataAccessException {
         AuthData auth = authDao.getAuth(authToken);
         if (auth == null) {throw new UnauthorizedException("invalid token");}
+        return createGame(request, auth);
+    }
 
+    /**
+     * Creates a game for a caller whose token was already checked
+     */
+    public CreateGameResult createGame(CreateGameRequest request,
+                                       AuthData auth)
+            throws DataAccessException {
         if (request.gameName() == null) {
             throw new DataAccessException("Game name is required");
         }
@@ -52,6 +61,34 @@ public class GameService {
     }
 
 
+    /**
+     * One page of the lobby, read without loading any game state
+     */
+    public ListLobbyResult listLobby(ListGamesRequest request, String authToken)
+            throws UnauthorizedException, DataAccessException {
+        AuthData auth = authDao.getAuth(authToken);
+        if (auth == null) {
+            throw new UnauthorizedException("invalid token");
+        }
+        return listLobby(request, auth);
+    }
+
+    /**
+     * Lists the lobby for a caller whose token was already checked
+     */
+    public ListLobbyResult listLobby(ListGamesRequest request, AuthData auth)
+            throws DataAccessException {
+        // One extra row tells whether another page follows
+        List<GameSummary> games = gameDao.listSummaries(request.statuses(), request.afterGameID(), request.limit() + 1);
+        Integer next = null;
+        if (games.size() > request.limit()) {
+            games = games.subList(0, request.limit());
+            next = games.getLast().gameID();
+        }
+        return new ListLobbyResult(games, next);
+    }
+
+
     public void joinGame(JoinGameRequest request, String authToken)
             throws UnauthorizedException,
             AlreadyTakenException,
@@ -67,7 +104,17 @@ public class GameService {
         if (auth == null) {
             throw new UnauthorizedException("invalid token");
         }
+        joinGame(request, auth);
+    }
 
+    /**
+     * Seats a caller whose token was already checked
+     */
+    public void joinGame(JoinGameRequest request, AuthData auth)
+            throws AlreadyTakenException,
+            NotFoundException,
+            DataAccessException
+    {
         GameData game;
         try {
             game = gameDao.getGame(request.gameID());
@@ -79,37 +126,24 @@ public class GameService {
         }
 
 
-        GameData updated;
-        String user = auth.username();
+        ChessGame.TeamColor color;
         if ("WHITE".equals(request.playerColor())) {
             if (game.whiteUsername() != null) {
                 throw new AlreadyTakenException();
             }
-
-            updated = new GameData(
-                    game.gameID(),
-                    user,
-                    game.blackUsername(),
-                    game.gameName(),
-                    game.game()
-            );
+            color = ChessGame.TeamColor.WHITE;
 
         } else if ("BLACK".equals(request.playerColor())) {
             if (game.blackUsername() != null) {
                 throw new AlreadyTakenException();
             }
-            updated = new GameData(
-                    game.gameID(),
-                    game.whiteUsername(),
-                    user,
-                    game.gameName(),
-                    game.game()
-            );
+            color = ChessGame.TeamColor.BLACK;
 
         } else {
             throw new IllegalArgumentException("Invalid teamColor");
         }
 
-        gameDao.updateGame(game.gameID(), updated);
+        // Only the seat, so a move made over WebSocket meanwhile is kept
+        gameDao.updatePlayer(game.gameID(), color, auth.username());
     }
 }
\ No newline at end of file
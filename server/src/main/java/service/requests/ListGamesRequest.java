@@ -1,4 +1,15 @@
 package service.requests;
 
-public record ListGamesRequest() {
-}
+import model.GameSummary;
+
+import java.util.Set;
+
+/**
+ * One page of the lobby: games with one of the statuses and a gameID above afterGameID,
+ * at most limit of them
+ */
+public record ListGamesRequest(
+        Set<GameSummary.Status> statuses,
+        int afterGameID,
+        int limit
+) {}
@@ -0,0 +1,12 @@
+package service.results;
+
+import model.GameSummary;
+import java.util.List;
+
+/**
+ * @param next the afterGameID for the following page, or null if this is the last page
+ */
+public record ListLobbyResult(
+        List<GameSummary> games,
+        Integer next
+) {}
@@ -0,0 +1,133 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingAuthDAOTests {
+    private static final long LONG_TTL = 600_000;
+
+    private CountingAuthDAO stored;
+    private CachingAuthDAO cache;
+
+    private static class CountingAuthDAO extends MemoryAuthDAO {
+        int reads;
+        Runnable afterRead = () -> { };
+
+        @Override
+        public AuthData getAuth(String authToken) throws DataAccessException {
+            reads++;
+            AuthData auth = super.getAuth(authToken);
+            afterRead.run();
+            return auth;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        stored = new CountingAuthDAO();
+    }
+
+    private CachingAuthDAO cache(int maxTokens, long timeToLive) {
+        cache = new CachingAuthDAO(stored, new CachingAuthDAO.Settings(maxTokens, timeToLive));
+        return cache;
+    }
+
+    // getAuth
+    @Test
+    void secondLookupIsServedFromMemory() throws DataAccessException {
+        cache(10, LONG_TTL);
+        stored.addAuth(new AuthData("token", "alice"));
+
+        assertEquals("alice", cache.getAuth("token").username());
+        assertEquals("alice", cache.getAuth("token").username());
+        assertEquals(1, stored.reads);
+    }
+
+    @Test
+    void addedTokenIsCached() throws DataAccessException {
+        cache(10, LONG_TTL);
+        cache.addAuth(new AuthData("token", "alice"));
+
+        assertEquals("alice", cache.getAuth("token").username());
+        assertEquals(0, stored.reads);
+    }
+
+    @Test
+    void unknownTokenIsNotCached() throws DataAccessException {
+        cache(10, LONG_TTL);
+        assertThrows(DataAccessException.class, () -> cache.getAuth("token"));
+
+        stored.addAuth(new AuthData("token", "alice"));
+
+        assertEquals("alice", cache.getAuth("token").username());
+    }
+
+    @Test
+    void expiredTokenIsLookedUpAgain() throws Exception {
+        cache(10, 1);
+        cache.addAuth(new AuthData("token", "alice"));
+        Thread.sleep(5);
+
+        assertEquals("alice", cache.getAuth("token").username());
+        assertEquals(1, stored.reads);
+    }
+
+    // removeAuth
+    @Test
+    void removedTokenIsRejected() throws DataAccessException {
+        cache(10, LONG_TTL);
+        cache.addAuth(new AuthData("token", "alice"));
+        cache.getAuth("token");
+
+        cache.removeAuth("token");
+
+        assertThrows(DataAccessException.class, () -> cache.getAuth("token"));
+    }
+
+    @Test
+    void lookupRacingRemovalIsNotCached() throws DataAccessException {
+        cache(10, LONG_TTL);
+        stored.addAuth(new AuthData("token", "alice"));
+        stored.afterRead = () -> {
+            stored.afterRead = () -> { };
+            try {
+                cache.removeAuth("token");
+            } catch (DataAccessException e) {
+                throw new RuntimeException(e);
+            }
+        };
+
+        // Read before the removal, so it may still answer, but must not be remembered
+        cache.getAuth("token");
+
+        assertThrows(DataAccessException.class, () -> cache.getAuth("token"));
+    }
+
+    // clear
+    @Test
+    void clearDropsTokens() throws DataAccessException {
+        cache(10, LONG_TTL);
+        cache.addAuth(new AuthData("token", "alice"));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertThrows(DataAccessException.class, () -> cache.getAuth("token"));
+    }
+
+    // bound
+    @Test
+    void cacheStaysWithinMaximum() throws DataAccessException {
+        cache(2, LONG_TTL);
+        for (int i = 0; i < 5; i++) {
+            cache.addAuth(new AuthData("token" + i, "user" + i));
+        }
+
+        assertTrue(cache.size() <= 2);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("user" + i, cache.getAuth("token" + i).username());
+        }
+    }
+}
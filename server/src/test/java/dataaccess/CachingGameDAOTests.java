@@ -0,0 +1,324 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import model.GameData;
+import org.junit.jupiter.api.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingGameDAOTests {
+    // Effectively never, so tests decide when to flush
+    private static final long MANUAL_FLUSH = 60_000;
+
+    private CountingGameDAO stored;
+    private CachingGameDAO cache;
+
+    private static class CountingGameDAO extends MemoryGameDAO {
+        int reads;
+        int batches;
+        boolean failing;
+
+        @Override
+        public GameData getGame(int gameID) throws DataAccessException {
+            reads++;
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public void updateGames(Map<Integer, GameData> updates) throws DataAccessException {
+            batches++;
+            if (failing) {
+                throw new DataAccessException("Error: database unavailable");
+            }
+            super.updateGames(updates);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        stored = new CountingGameDAO();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private CachingGameDAO cache(int maxGames, long idleTimeout, long flushInterval) {
+        return cache(maxGames, idleTimeout, flushInterval, 1_000);
+    }
+
+    private CachingGameDAO cache(int maxGames, long idleTimeout, long flushInterval, int maxPending) {
+        cache = new CachingGameDAO(stored, new CachingGameDAO.Settings(maxGames, idleTimeout, flushInterval, maxPending));
+        return cache;
+    }
+
+    private int createGame(String name) throws DataAccessException {
+        return stored.createGame(new GameData(0, null, null, name, new ChessGame()));
+    }
+
+    private static GameData moved(GameData game) throws InvalidMoveException {
+        game.game().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        return game;
+    }
+
+    // getGame
+    @Test
+    void secondReadIsServedFromMemory() throws DataAccessException {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+
+        assertEquals("g", cache.getGame(id).gameName());
+        assertEquals("g", cache.getGame(id).gameName());
+        assertEquals(1, stored.reads);
+    }
+
+    @Test
+    void changingReturnedGameDoesNotChangeCache() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+
+        moved(cache.getGame(id));
+
+        assertEquals(ChessGame.TeamColor.WHITE, cache.getGame(id).game().getTeamTurn());
+    }
+
+    // updateGame
+    @Test
+    void updateIsWrittenBackOnFlush() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+
+        cache.updateGame(id, moved(cache.getGame(id)));
+        assertEquals(ChessGame.TeamColor.BLACK, cache.getGame(id).game().getTeamTurn());
+        assertEquals(ChessGame.TeamColor.WHITE, stored.getGame(id).game().getTeamTurn());
+        assertEquals(1, cache.pendingWrites());
+
+        cache.flush();
+
+        assertEquals(ChessGame.TeamColor.BLACK, stored.getGame(id).game().getTeamTurn());
+        assertEquals(0, cache.pendingWrites());
+    }
+
+    @Test
+    void updatesToOneGameAreCoalesced() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        GameData game = cache.getGame(id);
+
+        cache.updateGame(id, new GameData(id, "white", null, "g", game.game()));
+        cache.updateGame(id, new GameData(id, "white", "black", "g", game.game()));
+        cache.flush();
+
+        assertEquals(1, stored.batches);
+        assertEquals("black", stored.getGame(id).blackUsername());
+    }
+
+    @Test
+    void backgroundFlushWritesWithinInterval() throws Exception {
+        cache(10, 600_000, 20);
+        int id = createGame("g");
+
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"white".equals(stored.getGame(id).whiteUsername()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("white", stored.getGame(id).whiteUsername());
+    }
+
+    @Test
+    void updatingMissingGameFails() {
+        cache(10, 600_000, MANUAL_FLUSH);
+        assertThrows(DataAccessException.class,
+                () -> cache.updateGame(42, new GameData(42, null, null, "g", new ChessGame())));
+    }
+
+    @Test
+    void moveKeepsSeatTakenMeanwhile() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        GameData beforeJoin = cache.getGame(id);
+
+        cache.updatePlayer(id, ChessGame.TeamColor.BLACK, "black");
+        cache.updateChessGame(id, moved(beforeJoin).game());
+        cache.flush();
+
+        GameData game = stored.getGame(id);
+        assertEquals("black", game.blackUsername());
+        assertEquals(ChessGame.TeamColor.BLACK, game.game().getTeamTurn());
+    }
+
+    @Test
+    void joinKeepsMoveMadeMeanwhile() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+
+        cache.updateChessGame(id, moved(cache.getGame(id)).game());
+        cache.updatePlayer(id, ChessGame.TeamColor.WHITE, "white");
+
+        GameData game = cache.getGame(id);
+        assertEquals("white", game.whiteUsername());
+        assertEquals(ChessGame.TeamColor.BLACK, game.game().getTeamTurn());
+    }
+
+    @Test
+    void updatingSeatOfMissingGameFails() {
+        cache(10, 600_000, MANUAL_FLUSH);
+        assertThrows(DataAccessException.class, () -> cache.updatePlayer(42, ChessGame.TeamColor.WHITE, "white"));
+    }
+
+    // write-back failures
+    @Test
+    void updatesAreRefusedWhileWriteBackFails() throws Exception {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+        stored.failing = true;
+
+        assertThrows(DataAccessException.class, () -> cache.flush());
+        assertThrows(DataAccessException.class,
+                () -> cache.updateChessGame(id, moved(cache.getGame(id)).game()));
+        assertEquals(ChessGame.TeamColor.WHITE, cache.getGame(id).game().getTeamTurn());
+        assertEquals(1, cache.pendingWrites());
+
+        stored.failing = false;
+        cache.updateChessGame(id, moved(cache.getGame(id)).game());
+
+        assertEquals("white", stored.getGame(id).whiteUsername());
+        cache.flush();
+        assertEquals(ChessGame.TeamColor.BLACK, stored.getGame(id).game().getTeamTurn());
+    }
+
+    @Test
+    void backgroundFailureRefusesUpdates() throws Exception {
+        cache(10, 600_000, 10);
+        int id = createGame("g");
+        stored.failing = true;
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        // A second attempt means the first one has finished failing
+        while (stored.batches < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThrows(DataAccessException.class,
+                () -> cache.updateGame(id, new GameData(id, "white", "black", "g", new ChessGame())));
+    }
+
+    @Test
+    void pendingWritesAreBounded() throws DataAccessException {
+        cache(10, 600_000, MANUAL_FLUSH, 2);
+        int first = createGame("a");
+        int second = createGame("b");
+        int third = createGame("c");
+
+        cache.updateGame(first, new GameData(first, "white", null, "a", new ChessGame()));
+        cache.updateGame(second, new GameData(second, "white", null, "b", new ChessGame()));
+        // Another change to a waiting game takes no extra room
+        cache.updatePlayer(first, ChessGame.TeamColor.BLACK, "black");
+        assertThrows(DataAccessException.class, () -> cache.updatePlayer(third, ChessGame.TeamColor.WHITE, "white"));
+        assertNull(cache.getGame(third).whiteUsername());
+
+        cache.flush();
+        cache.updatePlayer(third, ChessGame.TeamColor.WHITE, "white");
+        assertEquals(1, cache.pendingWrites());
+    }
+
+    // eviction
+    @Test
+    void leastRecentlyUsedGameIsEvicted() throws DataAccessException {
+        cache(2, 600_000, MANUAL_FLUSH);
+        int first = createGame("a");
+        int second = createGame("b");
+        int third = createGame("c");
+
+        cache.getGame(first);
+        cache.getGame(second);
+        cache.getGame(first);
+        cache.getGame(third);
+        stored.reads = 0;
+        cache.getGame(first);
+
+        assertEquals(2, cache.size());
+        assertEquals(0, stored.reads);
+        cache.getGame(second);
+        assertEquals(1, stored.reads);
+    }
+
+    @Test
+    void idleGameIsEvicted() throws Exception {
+        cache(10, 1, 10);
+        int id = createGame("g");
+        cache.getGame(id);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictedUnwrittenGameIsStillServed() throws Exception {
+        cache(1, 600_000, MANUAL_FLUSH);
+        int first = createGame("a");
+        int second = createGame("b");
+
+        cache.updateGame(first, moved(cache.getGame(first)));
+        cache.getGame(second);
+        stored.reads = 0;
+
+        assertEquals(ChessGame.TeamColor.BLACK, cache.getGame(first).game().getTeamTurn());
+        assertEquals(0, stored.reads);
+    }
+
+    // listGames
+    @Test
+    void listShowsUnwrittenChanges() throws DataAccessException {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+
+        var games = cache.listGames();
+
+        assertEquals(1, games.size());
+        assertEquals("white", games.getFirst().whiteUsername());
+    }
+
+    // clear
+    @Test
+    void clearDropsPendingWrites() throws DataAccessException {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.pendingWrites());
+        assertTrue(stored.listGames().isEmpty());
+    }
+
+    // close
+    @Test
+    void closeFlushesPendingWrites() throws DataAccessException {
+        cache(10, 600_000, MANUAL_FLUSH);
+        int id = createGame("g");
+        cache.updateGame(id, new GameData(id, "white", null, "g", new ChessGame()));
+
+        cache.close();
+
+        assertEquals("white", stored.getGame(id).whiteUsername());
+        cache.updateGame(id, new GameData(id, "white", "black", "g", new ChessGame()));
+        assertEquals("black", stored.getGame(id).blackUsername());
+    }
+}
@@ -0,0 +1,229 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTests {
+    private String url;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Embedded H2 in MySQL mode stands in for the real database
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (var conn = DriverManager.getConnection(url);
+             var stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE item (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(50))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool pool(int minSize, int maxSize, long connectionTimeout, long validationInterval,
+                                long leakDetectionThreshold) {
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url),
+                new ConnectionPool.Settings(minSize, maxSize, connectionTimeout, validationInterval, 600_000,
+                        leakDetectionThreshold));
+        return pool;
+    }
+
+    // getConnection
+    @Test
+    void returnedConnectionIsReused() throws SQLException {
+        pool(0, 2, 1_000, 500, 0);
+        try (var conn = pool.getConnection()) {
+            assertEquals(1, pool.active());
+        }
+        try (var conn = pool.getConnection();
+             var stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO item (name) VALUES ('a')");
+        }
+
+        assertEquals(1, pool.getMetrics().connectionsCreated());
+        assertEquals(2, pool.getMetrics().borrows());
+        assertEquals(0, pool.active());
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    void closedHandleCannotBeUsed() throws SQLException {
+        pool(0, 1, 1_000, 500, 0);
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        pool(0, 2, 100, 500, 0);
+        try (var first = pool.getConnection(); var second = pool.getConnection()) {
+            assertThrows(SQLException.class, pool::getConnection);
+        }
+
+        assertEquals(1, pool.getMetrics().timeouts());
+        assertEquals(2, pool.total());
+    }
+
+    @Test
+    void waitingBorrowerGetsReturnedConnection() throws Exception {
+        pool(0, 1, 5_000, 500, 0);
+        Connection held = pool.getConnection();
+        var waiter = CompletableFuture.supplyAsync(() -> {
+            try (var conn = pool.getConnection()) {
+                return conn.isValid(1);
+            } catch (SQLException ex) {
+                return false;
+            }
+        });
+        while (pool.waiting() == 0) {
+            Thread.onSpinWait();
+        }
+        held.close();
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getMetrics().connectionsCreated());
+    }
+
+    @Test
+    void borrowerWaitsForConnectionBeingOpened() throws Exception {
+        var opening = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        pool = new ConnectionPool(() -> {
+            opening.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return DriverManager.getConnection(url);
+        }, new ConnectionPool.Settings(1, 1, 5_000, 500, 600_000, 0));
+        // The housekeeper has taken the only slot to open the minimum connection
+        assertTrue(opening.await(5, TimeUnit.SECONDS));
+
+        var waiter = CompletableFuture.supplyAsync(() -> {
+            try (var conn = pool.getConnection()) {
+                return conn.isValid(1);
+            } catch (SQLException ex) {
+                return false;
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(waiter.isDone());
+        release.countDown();
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getMetrics().connectionsCreated());
+    }
+
+    // validation
+    @Test
+    void deadIdleConnectionIsReplaced() throws SQLException {
+        pool(0, 1, 1_000, 0, 0);
+        Connection physical;
+        try (var conn = pool.getConnection()) {
+            physical = conn.unwrap(Connection.class);
+        }
+        physical.close();
+        try (var conn = pool.getConnection()) {
+            assertTrue(conn.isValid(1));
+        }
+
+        assertEquals(1, pool.getMetrics().validationFailures());
+        assertEquals(2, pool.getMetrics().connectionsCreated());
+    }
+
+    @Test
+    void uncommittedWorkIsRolledBackOnReturn() throws SQLException {
+        pool(0, 1, 1_000, 500, 0);
+        try (var conn = pool.getConnection();
+             var stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO item (name) VALUES ('a')");
+        }
+        try (var conn = pool.getConnection();
+             var stmt = conn.createStatement();
+             var rs = stmt.executeQuery("SELECT COUNT(*) FROM item")) {
+            assertTrue(conn.getAutoCommit());
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    // housekeeping
+    @Test
+    void maintainOpensMinimumConnections() throws InterruptedException {
+        pool(2, 4, 1_000, 500, 0);
+        pool.maintain();
+
+        // The housekeeping thread may still be opening one of them
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.idle() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.total());
+        assertEquals(2, pool.idle());
+    }
+
+    @Test
+    void heldConnectionIsReportedAsLeak() throws Exception {
+        pool(0, 1, 1_000, 500, 20);
+        try (var conn = pool.getConnection()) {
+            Thread.sleep(50);
+            pool.maintain();
+            pool.maintain();
+        }
+
+        assertEquals(1, pool.getMetrics().leaks());
+    }
+
+    @Test
+    void closedPoolRefusesBorrows() throws SQLException {
+        pool(0, 1, 1_000, 500, 0);
+        Connection conn = pool.getConnection();
+        pool.close();
+        conn.close();
+
+        assertThrows(SQLException.class, pool::getConnection);
+        assertEquals(0, pool.total());
+    }
+
+    // settings
+    @Test
+    void settingsReadFromProperties() {
+        Properties props = new Properties();
+        props.setProperty("db.pool.minSize", "1");
+        props.setProperty("db.pool.maxSize", "20");
+        props.setProperty("db.pool.leakDetectionThreshold", "30000");
+
+        var settings = ConnectionPool.Settings.fromProperties(props);
+
+        assertEquals(1, settings.minSize());
+        assertEquals(20, settings.maxSize());
+        assertEquals(30_000, settings.leakDetectionThreshold());
+        assertEquals(ConnectionPool.Settings.DEFAULTS.connectionTimeout(), settings.connectionTimeout());
+    }
+
+    @Test
+    void settingsRejectMinAboveMax() {
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool.Settings(5, 2, 1_000, 500, 600_000, 0));
+    }
+}
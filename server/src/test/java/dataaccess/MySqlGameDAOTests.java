@@ -1,11 +1,25 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.PackedMove;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
 import model.GameData;
+import model.GameSummary;
 import model.UserData;
 import org.junit.jupiter.api.*;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -108,4 +122,254 @@ public class MySqlGameDAOTests {
                 () -> gameDao.updateGame(12345, updated)
         );
     }
+
+    // move log
+    private static final String[] KNIGHT_SHUFFLE = {"g1f3", "g8f6", "f3g1", "f6g8"};
+
+    private static void play(ChessGame game, int plies) throws InvalidMoveException {
+        for (int i = 0; i < plies; i++) {
+            String move = KNIGHT_SHUFFLE[game.getPly() % KNIGHT_SHUFFLE.length];
+            game.makeMove(PackedMove.toChessMove(PackedMove.parse(move)));
+        }
+    }
+
+    private static int queryInt(String sql, int gameID) throws DataAccessException, SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, gameID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static int loggedMoves(int gameID) throws Exception {
+        return queryInt("SELECT COUNT(*) FROM game_move WHERE gameID = ?", gameID);
+    }
+
+    private static int snapshotPly(int gameID) throws Exception {
+        return queryInt("SELECT snapshotPly FROM game WHERE gameID = ?", gameID);
+    }
+
+    /**
+     * Plays the moves one update at a time, as a game in progress is written
+     */
+    private void playAndStore(int id, int plies) throws Exception {
+        for (int i = 0; i < plies; i++) {
+            GameData game = gameDao.getGame(id);
+            play(game.game(), 1);
+            gameDao.updateGame(id, game);
+        }
+    }
+
+    @Test
+    void movesAreAppendedWithoutSnapshot() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+
+        playAndStore(id, 3);
+
+        assertEquals(3, loggedMoves(id));
+        assertEquals(0, snapshotPly(id));
+        assertEquals("f3g1", PackedMove.toString(gameDao.getGame(id).game().getMove(3)));
+    }
+
+    @Test
+    void snapshotIsTakenEveryInterval() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+
+        playAndStore(id, MySqlGameDAO.SNAPSHOT_INTERVAL - 1);
+        assertEquals(0, snapshotPly(id));
+        playAndStore(id, 1);
+        assertEquals(MySqlGameDAO.SNAPSHOT_INTERVAL, snapshotPly(id));
+        playAndStore(id, 1);
+
+        assertEquals(MySqlGameDAO.SNAPSHOT_INTERVAL, snapshotPly(id));
+        assertEquals(MySqlGameDAO.SNAPSHOT_INTERVAL + 1, loggedMoves(id));
+    }
+
+    @Test
+    void getGameReplaysMovesAfterSnapshot() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        ChessGame expected = new ChessGame();
+        play(expected, MySqlGameDAO.SNAPSHOT_INTERVAL + 3);
+
+        playAndStore(id, MySqlGameDAO.SNAPSHOT_INTERVAL + 3);
+
+        GameData loaded = gameDao.getGame(id);
+        assertEquals(expected, loaded.game());
+        assertEquals(MySqlGameDAO.SNAPSHOT_INTERVAL + 3, loaded.game().getPly());
+        assertEquals(expected, gameDao.listGames().getFirst().game());
+    }
+
+    @Test
+    void gameOverWritesSnapshot() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        GameData game = gameDao.getGame(id);
+        play(game.game(), 2);
+        game.game().setGameOver(true);
+
+        gameDao.updateGame(id, game);
+
+        assertEquals(2, snapshotPly(id));
+        assertEquals(2, loggedMoves(id));
+        assertTrue(gameDao.getGame(id).game().isGameOver());
+    }
+
+    @Test
+    void playerChangeWritesSnapshot() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        playAndStore(id, 3);
+        GameData game = gameDao.getGame(id);
+
+        gameDao.updateGame(id, new GameData(id, "JohnCena", null, "M", game.game()));
+
+        assertEquals(3, snapshotPly(id));
+        assertEquals(3, loggedMoves(id));
+        assertEquals("JohnCena", gameDao.getGame(id).whiteUsername());
+    }
+
+    @Test
+    void outOfDateWriteIsRejected() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        GameData stale = gameDao.getGame(id);
+        playAndStore(id, 2);
+        play(stale.game(), 1);
+
+        assertThrows(DataAccessException.class, () -> gameDao.updateGame(id, stale));
+
+        assertEquals(2, loggedMoves(id));
+        assertEquals(2, gameDao.getGame(id).game().getPly());
+    }
+
+    @Test
+    void outOfDateWriteIsSkippedInBatch() throws Exception {
+        int staleID = gameDao.createGame(new GameData(0, null, null, "S", new ChessGame()));
+        int freshID = gameDao.createGame(new GameData(0, null, null, "F", new ChessGame()));
+        GameData stale = gameDao.getGame(staleID);
+        playAndStore(staleID, 2);
+        play(stale.game(), 1);
+        GameData fresh = gameDao.getGame(freshID);
+        play(fresh.game(), 1);
+
+        gameDao.updateGames(Map.of(staleID, stale, freshID, fresh));
+
+        assertEquals(2, loggedMoves(staleID));
+        assertEquals(1, loggedMoves(freshID));
+    }
+
+    @Test
+    void divergingWriteIsRejected() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        playAndStore(id, 1);
+        GameData first = gameDao.getGame(id);
+        GameData second = gameDao.getGame(id);
+        play(first.game(), 1);
+        second.game().makeMove(PackedMove.toChessMove(PackedMove.parse("e7e5")));
+        gameDao.updateGame(id, first);
+
+        // Same ply as the stored game, different position
+        assertThrows(DataAccessException.class, () -> gameDao.updateGame(id, second));
+        // Further on, but from a position the stored game never reached
+        play(second.game(), 1);
+        assertThrows(DataAccessException.class, () -> gameDao.updateGame(id, second));
+
+        assertEquals(2, loggedMoves(id));
+        assertEquals("g8f6", PackedMove.toString(gameDao.getGame(id).game().getMove(2)));
+    }
+
+    @Test
+    void divergingWriteIsRejectedAfterSnapshot() throws Exception {
+        int id = gameDao.createGame(new GameData(0, null, null, "M", new ChessGame()));
+        GameData first = gameDao.getGame(id);
+        GameData second = gameDao.getGame(id);
+        gameDao.updateGame(id, new GameData(id, "JohnCena", null, "M", first.game()));
+        second.game().makeMove(PackedMove.toChessMove(PackedMove.parse("e2e4")));
+        second = new GameData(id, "JohnCena", null, "M", second.game());
+        play(first.game(), 1);
+        first.game().setGameOver(true);
+        gameDao.updateGame(id, new GameData(id, "JohnCena", null, "M", first.game()));
+
+        GameData diverged = second;
+        assertThrows(DataAccessException.class, () -> gameDao.updateGame(id, diverged));
+        assertTrue(gameDao.getGame(id).game().isGameOver());
+    }
+
+    // migration
+    /**
+     * The game as the original server stored it, with Gson reflection over an 8x8 grid
+     */
+    private static String originalJson(ChessGame game) {
+        JsonArray squares = new JsonArray();
+        for (int row = 1; row <= 8; row++) {
+            JsonArray rank = new JsonArray();
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = game.getBoard().getPiece(ChessPosition.of(row, col));
+                if (piece == null) {
+                    rank.add(JsonNull.INSTANCE);
+                } else {
+                    JsonObject json = new JsonObject();
+                    json.addProperty("pieceColor", piece.getTeamColor().name());
+                    json.addProperty("type", piece.getPieceType().name());
+                    rank.add(json);
+                }
+            }
+            squares.add(rank);
+        }
+        JsonObject board = new JsonObject();
+        board.add("squares", squares);
+        JsonObject json = new JsonObject();
+        json.addProperty("turn", game.getTeamTurn().name());
+        json.add("board", board);
+        json.addProperty("gameOver", game.isGameOver());
+        return json.toString();
+    }
+
+    @Test
+    void originalTableIsMigrated() throws Exception {
+        ChessGame played = new ChessGame();
+        play(played, 2);
+        ChessGame finished = new ChessGame(played);
+        finished.setGameOver(true);
+        try (Connection conn = DatabaseManager.getConnection(); var stmt = conn.createStatement()) {
+            stmt.executeUpdate("DROP TABLE game_move");
+            stmt.executeUpdate("DROP TABLE game");
+            stmt.executeUpdate("""
+                    CREATE TABLE game (
+                      gameID INT AUTO_INCREMENT PRIMARY KEY, whiteUsername VARCHAR(50), blackUsername VARCHAR(50),
+                      gameName VARCHAR(100) NOT NULL, gameState TEXT NOT NULL)""");
+            try (var insert = conn.prepareStatement(
+                    "INSERT INTO game (gameID, whiteUsername, blackUsername, gameName, gameState) VALUES (?,?,?,?,?)")) {
+                Object[][] rows = {
+                        {1, "JohnCena", null, "open", originalJson(new ChessGame())},
+                        {2, "JohnCena", "chickenJoe", "playing", originalJson(played)},
+                        {3, "JohnCena", "chickenJoe", "over", originalJson(finished)},
+                };
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        insert.setObject(i + 1, row[i]);
+                    }
+                    insert.executeUpdate();
+                }
+            }
+        }
+
+        try {
+            DatabaseInitializer.initialize();
+
+            var summaries = gameDao.listSummaries(EnumSet.allOf(GameSummary.Status.class), 0, 10);
+            assertEquals(List.of(GameSummary.Status.OPEN, GameSummary.Status.IN_PROGRESS, GameSummary.Status.FINISHED),
+                    summaries.stream().map(GameSummary::status).toList());
+            assertEquals(played, gameDao.getGame(2).game());
+            assertTrue(gameDao.getGame(3).game().isGameOver());
+            assertFalse(gameDao.getGame(2).game().isGameOver());
+        } finally {
+            // Put back the current tables for the other tests
+            try (Connection conn = DatabaseManager.getConnection(); var stmt = conn.createStatement()) {
+                stmt.executeUpdate("DROP TABLE game_move");
+                stmt.executeUpdate("DROP TABLE game");
+            }
+            DatabaseInitializer.initialize();
+        }
+    }
 }
@@ -3,15 +3,22 @@ package service;
 import dataaccess.MemoryGameDAO;
 import dataaccess.MemoryAuthDAO;
 import dataaccess.DataAccessException;
+import chess.ChessGame;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import service.exceptions.UnauthorizedException;
 import service.requests.CreateGameRequest;
 import service.requests.JoinGameRequest;
+import service.requests.ListGamesRequest;
 import service.results.CreateGameResult;
 import service.results.ListGamesResult;
+import service.results.ListLobbyResult;
+
+import java.util.EnumSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,6 +81,41 @@ public class GameServiceTest {
         );
     }
 
+    // listLobby tests
+
+    @Test
+    public void listLobbyFiltersAndPages() throws Exception {
+        gameDao.createGame(new GameData(0, null, null, "Open1", new ChessGame()));
+        gameDao.createGame(new GameData(0, "alice", "bob", "Playing", new ChessGame()));
+        gameDao.createGame(new GameData(0, "alice", null, "Open2", new ChessGame()));
+        ChessGame over = new ChessGame();
+        over.setGameOver(true);
+        gameDao.createGame(new GameData(0, "alice", "bob", "Done", over));
+
+        var open = EnumSet.of(GameSummary.Status.OPEN);
+        ListLobbyResult first = gameService.listLobby(new ListGamesRequest(open, 0, 1), validToken);
+        assertEquals(List.of("Open1"), first.games().stream().map(GameSummary::gameName).toList());
+        assertNotNull(first.next(), "a second page should follow");
+
+        ListLobbyResult second = gameService.listLobby(new ListGamesRequest(open, first.next(), 1), validToken);
+        assertEquals(List.of("Open2"), second.games().stream().map(GameSummary::gameName).toList());
+        assertNull(second.next(), "no page should follow the last one");
+
+        var active = EnumSet.of(GameSummary.Status.OPEN, GameSummary.Status.IN_PROGRESS);
+        ListLobbyResult all = gameService.listLobby(new ListGamesRequest(active, 0, 10), validToken);
+        assertEquals(3, all.games().size(), "finished games should be left out");
+    }
+
+    @Test
+    public void listLobbyWithCheckedAuthSkipsLookup() throws Exception {
+        gameDao.createGame(new GameData(0, null, null, "Open1", new ChessGame()));
+        var open = EnumSet.of(GameSummary.Status.OPEN);
+
+        // The token is not stored, so the result shows it was not looked up again
+        ListLobbyResult result = gameService.listLobby(new ListGamesRequest(open, 0, 10), new AuthData("unstored", "alice"));
+        assertEquals(1, result.games().size());
+    }
+
     // joinGame tests
 
     @Test
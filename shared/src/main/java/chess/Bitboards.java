@@ -0,0 +1,177 @@
+package chess;
+
+/**
+ * Square indexing, masks and precomputed attack tables for the bitboard
+ * representation used by {@link ChessBoard}.
+ * <p>
+ * Squares are numbered 0..63 starting at a1 (row 1, column 1) and moving
+ * along the row first, so a1 = 0, h1 = 7, a8 = 56 and h8 = 63.
+ */
+final class Bitboards {
+
+    static final int WHITE = 0, BLACK = 1;
+    static final int PIECE_TYPES = 6;
+    static final int PIECE_KINDS = 12;
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_2 = RANK_1 << 8;
+    static final long RANK_7 = RANK_1 << 48;
+    static final long RANK_8 = RANK_1 << 56;
+
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Squares strictly between two squares on a shared rank, file or diagonal, else 0
+    static final long[][] BETWEEN = new long[64][64];
+    // The whole rank, file or diagonal through two squares, edge to edge, else 0
+    static final long[][] LINE = new long[64][64];
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    // N, S, E, W, NE, NW, SE, SW as (shift, mask applied after the shift)
+    private static final int[] SHIFTS = {8, -8, 1, -1, 9, 7, -7, -9};
+    private static final long[] WRAP_MASKS = {~0L, ~0L, ~FILE_A, ~FILE_H, ~FILE_A, ~FILE_H, ~FILE_A, ~FILE_H};
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            long b = 1L << sq;
+            KNIGHT_ATTACKS[sq] = ((b << 17) & ~FILE_A) | ((b << 15) & ~FILE_H)
+                    | ((b << 10) & ~(FILE_A | FILE_A << 1)) | ((b << 6) & ~(FILE_H | FILE_H >>> 1))
+                    | ((b >>> 17) & ~FILE_H) | ((b >>> 15) & ~FILE_A)
+                    | ((b >>> 10) & ~(FILE_H | FILE_H >>> 1)) | ((b >>> 6) & ~(FILE_A | FILE_A << 1));
+            long king = 0;
+            for (int dir = 0; dir < SHIFTS.length; dir++) {
+                king |= shift(b, dir);
+            }
+            KING_ATTACKS[sq] = king;
+            PAWN_ATTACKS[WHITE][sq] = shift(b, 4) | shift(b, 5);
+            PAWN_ATTACKS[BLACK][sq] = shift(b, 6) | shift(b, 7);
+        }
+        // Built with the ray walk rather than the magic tables, which are themselves built from Bitboards
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long bitA = 1L << a, bitB = 1L << b;
+                if ((rookRays(a, bitB) & bitB) != 0) {
+                    BETWEEN[a][b] = rookRays(a, bitB) & rookRays(b, bitA);
+                    LINE[a][b] = rookRays(a, 0) & rookRays(b, 0) | bitA | bitB;
+                } else if ((bishopRays(a, bitB) & bitB) != 0) {
+                    BETWEEN[a][b] = bishopRays(a, bitB) & bishopRays(b, bitA);
+                    LINE[a][b] = bishopRays(a, 0) & bishopRays(b, 0) | bitA | bitB;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    static boolean onBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    static boolean onBoard(ChessPosition position) {
+        return onBoard(position.getRow(), position.getColumn());
+    }
+
+    /**
+     * Callers check {@link #onBoard(int, int)} first; off-board coordinates wrap onto
+     * other squares.
+     */
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    static int row(int sq) {
+        return (sq >>> 3) + 1;
+    }
+
+    static int column(int sq) {
+        return (sq & 7) + 1;
+    }
+
+    static ChessPosition position(int sq) {
+        return ChessPosition.of(sq);
+    }
+
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * PIECE_TYPES + type.ordinal();
+    }
+
+    static int pieceIndex(int color, ChessPiece.PieceType type) {
+        return color * PIECE_TYPES + type.ordinal();
+    }
+
+    static int colorOf(int pieceIndex) {
+        return pieceIndex / PIECE_TYPES;
+    }
+
+    static ChessPiece.PieceType typeOf(int pieceIndex) {
+        return TYPES[pieceIndex % PIECE_TYPES];
+    }
+
+    static ChessGame.TeamColor teamColor(int color) {
+        return COLORS[color];
+    }
+
+    static ChessPiece piece(int pieceIndex) {
+        return ChessPiece.of(pieceIndex);
+    }
+
+    static long rookAttacks(int sq, long occupied) {
+        return MagicBitboards.rookAttacks(sq, occupied);
+    }
+
+    static long bishopAttacks(int sq, long occupied) {
+        return MagicBitboards.bishopAttacks(sq, occupied);
+    }
+
+    static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    /**
+     * Rook attacks computed ray by ray; only used to build the magic lookup tables
+     */
+    static long rookRays(int sq, long occupied) {
+        return slide(sq, occupied, 0) | slide(sq, occupied, 1) | slide(sq, occupied, 2) | slide(sq, occupied, 3);
+    }
+
+    /**
+     * Bishop attacks computed ray by ray; only used to build the magic lookup tables
+     */
+    static long bishopRays(int sq, long occupied) {
+        return slide(sq, occupied, 4) | slide(sq, occupied, 5) | slide(sq, occupied, 6) | slide(sq, occupied, 7);
+    }
+
+    private static long shift(long b, int dir) {
+        int s = SHIFTS[dir];
+        return (s > 0 ? b << s : b >>> -s) & WRAP_MASKS[dir];
+    }
+
+    /**
+     * Walks one ray from sq, stopping on (and including) the first occupied square.
+     */
+    private static long slide(int sq, long occupied, int dir) {
+        long attacks = 0;
+        long b = 1L << sq;
+        while (true) {
+            b = shift(b, dir);
+            if (b == 0) {
+                break;
+            }
+            attacks |= b;
+            if ((b & occupied) != 0) {
+                break;
+            }
+        }
+        return attacks;
+    }
+}
@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -10,10 +9,28 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessBoard {
-    private ChessPiece[][] squares =  new ChessPiece[8][8];
+    // One bitboard per piece kind, indexed by Bitboards.pieceIndex, plus an occupancy mask per color
+    private long[] pieces = new long[Bitboards.PIECE_KINDS];
+    private long[] colors = new long[2];
+
+    // Zobrist key of the pieces, kept up to date by put/clear once it has been computed
+    private transient long zobrist;
+    private transient boolean zobristValid;
+
     public ChessBoard() {
     }
 
+    /**
+     * Copies another board. The copy shares no state with the original, so each can be
+     * changed (or used from a different thread) independently.
+     */
+    public ChessBoard(ChessBoard other) {
+        pieces = other.pieces.clone();
+        colors = other.colors.clone();
+        zobrist = other.zobrist;
+        zobristValid = other.zobristValid;
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -21,9 +38,14 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        int r = position.getRow() - 1;
-        int c = position.getColumn() - 1;
-        squares[r][c] = piece;
+        if (!Bitboards.onBoard(position)) {
+            throw new IllegalArgumentException("Off the board: " + position);
+        }
+        int sq = Bitboards.square(position);
+        clear(sq);
+        if (piece != null) {
+            put(sq, Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType()));
+        }
     }
 
     /**
@@ -34,9 +56,11 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        int r = position.getRow() - 1;
-        int c = position.getColumn() - 1;
-        return squares[r][c];
+        if (!Bitboards.onBoard(position)) {
+            return null;
+        }
+        int index = pieceAt(Bitboards.square(position));
+        return index < 0 ? null : Bitboards.piece(index);
     }
 
     /**
@@ -44,44 +68,123 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        //Clear Board
-        for (int r=0; r<8; r++) {
-            for (int c=0; c<8; c++) {
-                squares[r][c] = null;
+        Arrays.fill(pieces, 0L);
+        setStartingPieces(Bitboards.WHITE, Bitboards.RANK_1, Bitboards.RANK_2);
+        setStartingPieces(Bitboards.BLACK, Bitboards.RANK_8, Bitboards.RANK_7);
+        colors[Bitboards.WHITE] = Bitboards.RANK_1 | Bitboards.RANK_2;
+        colors[Bitboards.BLACK] = Bitboards.RANK_7 | Bitboards.RANK_8;
+        zobristValid = false;
+    }
+
+    private void setStartingPieces(int color, long backRank, long pawnRank) {
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.PAWN)]   = pawnRank;
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.ROOK)]   = backRank & 0x8181818181818181L;
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.KNIGHT)] = backRank & 0x4242424242424242L;
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.BISHOP)] = backRank & 0x2424242424242424L;
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.QUEEN)]  = backRank & Bitboards.FILE_A << 3;
+        pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.KING)]   = backRank & Bitboards.FILE_A << 4;
+    }
+
+    /**
+     * @return index of the piece kind on sq, or -1 if the square is empty
+     */
+    int pieceAt(int sq) {
+        long bit = 1L << sq;
+        int color;
+        if ((colors[Bitboards.WHITE] & bit) != 0) {
+            color = Bitboards.WHITE;
+        } else if ((colors[Bitboards.BLACK] & bit) != 0) {
+            color = Bitboards.BLACK;
+        } else {
+            return -1;
+        }
+        int first = color * Bitboards.PIECE_TYPES;
+        for (int index = first; index < first + Bitboards.PIECE_TYPES; index++) {
+            if ((pieces[index] & bit) != 0) {
+                return index;
             }
         }
+        return -1;
+    }
 
-        //PAWNS
-        for (int c=1; c<=8; c++) {
-            addPiece(new ChessPosition(2,c), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN)));
-            addPiece(new ChessPosition(7,c), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN)));
+    /**
+     * Places a piece kind on an empty square
+     */
+    void put(int sq, int pieceIndex) {
+        long bit = 1L << sq;
+        pieces[pieceIndex] |= bit;
+        colors[Bitboards.colorOf(pieceIndex)] |= bit;
+        if (zobristValid) {
+            zobrist ^= Zobrist.PIECE_SQUARE[pieceIndex][sq];
         }
+    }
 
-        //ROOK
-        addPiece(new ChessPosition(1,1), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK)));
-        addPiece(new ChessPosition(1,8), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK)));
-        addPiece(new ChessPosition(8,1), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK)));
-        addPiece(new ChessPosition(8,8), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK)));
+    /**
+     * Removes whatever piece is on sq
+     */
+    void clear(int sq) {
+        int index = pieceAt(sq);
+        if (index >= 0) {
+            long mask = ~(1L << sq);
+            pieces[index] &= mask;
+            colors[Bitboards.colorOf(index)] &= mask;
+            if (zobristValid) {
+                zobrist ^= Zobrist.PIECE_SQUARE[index][sq];
+            }
+        }
+    }
+
+    /**
+     * @return Zobrist key of the piece placement alone. Computed in full the first time
+     * (including after Gson fills in the bitboards) and incrementally after that.
+     */
+    long zobristKey() {
+        if (!zobristValid) {
+            long key = 0;
+            for (int index = 0; index < Bitboards.PIECE_KINDS; index++) {
+                long bits = pieces[index];
+                while (bits != 0) {
+                    key ^= Zobrist.PIECE_SQUARE[index][Long.numberOfTrailingZeros(bits)];
+                    bits &= bits - 1;
+                }
+            }
+            zobrist = key;
+            zobristValid = true;
+        }
+        return zobrist;
+    }
+
+    long pieces(int pieceIndex) {
+        return pieces[pieceIndex];
+    }
+
+    long pieces(int color, ChessPiece.PieceType type) {
+        return pieces[Bitboards.pieceIndex(color, type)];
+    }
 
-        //KNIGHT
-        addPiece(new ChessPosition(1,2), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT)));
-        addPiece(new ChessPosition(1,7), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT)));
-        addPiece(new ChessPosition(8,2), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT)));
-        addPiece(new ChessPosition(8,7), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT)));
+    long occupancy(int color) {
+        return colors[color];
+    }
 
-        //BISHOP
-        addPiece(new ChessPosition(1,3), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP)));
-        addPiece(new ChessPosition(1,6), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP)));
-        addPiece(new ChessPosition(8,3), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP)));
-        addPiece(new ChessPosition(8,6), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP)));
+    long occupied() {
+        return colors[Bitboards.WHITE] | colors[Bitboards.BLACK];
+    }
 
-        //QUEEN
-        addPiece(new ChessPosition(1,4), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN)));
-        addPiece(new ChessPosition(8,4), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN)));
+    /**
+     * @return the FEN piece placement of this board, e.g.
+     * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR}
+     */
+    public String toFen() {
+        return Fen.formatPlacement(this);
+    }
 
-        //KING
-        addPiece(new ChessPosition(1,5), (new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)));
-        addPiece(new ChessPosition(8,5), (new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING)));
+    /**
+     * Builds a board from a FEN piece placement
+     *
+     * @throws IllegalArgumentException if the text is not a valid placement
+     */
+    public static ChessBoard fromFen(String placement) {
+        return Fen.parsePlacement(placement);
     }
 
     @Override
@@ -90,18 +193,26 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(squares, that.squares);
+        return Arrays.equals(pieces, that.pieces);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        long key = zobristKey();
+        return (int) (key ^ (key >>> 32));
     }
 
     @Override
     public String toString() {
-        return "ChessBoard{" +
-                "squares=" + Arrays.toString(squares) +
-                '}';
+        StringBuilder sb = new StringBuilder("ChessBoard{\n");
+        for (int row = 8; row >= 1; row--) {
+            sb.append('|');
+            for (int col = 1; col <= 8; col++) {
+                int index = pieceAt(Bitboards.square(row, col));
+                sb.append(index < 0 ? " " : Bitboards.piece(index).toString()).append('|');
+            }
+            sb.append('\n');
+        }
+        return sb.append('}').toString();
     }
 }
@@ -5,15 +5,61 @@ import java.util.*;
 
 public class ChessGame {
 
+    static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+    static final int ALL_CASTLING = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+    static final int NO_SQUARE = -1;
+
+    // Rights that survive a move touching each square, so a king or rook leaving
+    // (or a rook being captured on) its home square clears the matching rights
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING);
+        CASTLING_MASKS[0]  &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[7]  &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[4]  &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASKS[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
     private TeamColor turn;
     private ChessBoard board;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+
+    private transient UndoStack undo = new UndoStack();
+    // Plies played before the first move on the undo stack, e.g. for a game restored from a snapshot
+    private transient int startPly;
+
+    // Legal moves of each color for the position whose key is in cachedKeys, so validMoves,
+    // makeMove and the checkmate/stalemate checks on one position generate them only once.
+    // A count of -1 marks an empty slot.
+    private transient long[] cachedKeys = new long[2];
+    private transient int[] cachedCounts = {-1, -1};
+    private transient int[][] cachedMoves = new int[2][PackedMove.MAX_MOVES];
 
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard();
+        castlingRights = ALL_CASTLING;
         setTeamTurn(TeamColor.WHITE);
     }
 
+    /**
+     * Copies another game, including its move history, so the copy can make and unmake
+     * moves without affecting the original
+     */
+    public ChessGame(ChessGame other) {
+        turn = other.turn;
+        board = new ChessBoard(other.board);
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        undo = new UndoStack(other.undo);
+        startPly = other.startPly;
+        gameOver = other.gameOver;
+    }
+
 
     public TeamColor getTeamTurn() {
         return turn;
@@ -32,85 +78,259 @@ public class ChessGame {
 
 
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        ChessPiece piece = board.getPiece(startPosition);
-        if (piece == null) {
+        if (!Bitboards.onBoard(startPosition)) {
             return null;
         }
-        Collection<ChessMove> validMovesIfBoardEmpty = piece.pieceMoves(board, startPosition);
-        Set<ChessMove> validMoves = new HashSet<>(validMovesIfBoardEmpty.size());
-        for (ChessMove move : validMovesIfBoardEmpty) {
-            ChessPiece temp = board.getPiece(move.getEndPosition());
-            board.addPiece(startPosition, null);
-            board.addPiece(move.getEndPosition(), piece);
-            if (!isInCheck(piece.getTeamColor())) {
-                validMoves.add(move);
+        int from = Bitboards.square(startPosition);
+        int pieceIndex = board.pieceAt(from);
+        if (pieceIndex < 0) {
+            return null;
+        }
+        int color = Bitboards.colorOf(pieceIndex);
+        int count = cachedLegalMoves(color);
+        int[] moves = cachedMoves[color];
+        Set<ChessMove> validMoves = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.from(moves[i]) == from) {
+                validMoves.add(PackedMove.toChessMove(moves[i]));
             }
-            board.addPiece(move.getEndPosition(), temp);
-            board.addPiece(startPosition, piece);
         }
         return validMoves;
     }
 
 
+    /**
+     * Writes every legal move of the team to move into a caller-supplied buffer,
+     * without allocating
+     *
+     * @param moves buffer of at least {@link PackedMove#MAX_MOVES} entries
+     * @return number of moves written
+     */
+    public int generateMoves(int[] moves) {
+        return legalMoves(turn.ordinal(), -1L, moves);
+    }
+
+
+    /**
+     * Writes every legal move of a team into a caller-supplied buffer, without allocating
+     *
+     * @param team  the team whose moves to generate
+     * @param moves buffer of at least {@link PackedMove#MAX_MOVES} entries
+     * @return number of moves written
+     */
+    public int generateMoves(TeamColor team, int[] moves) {
+        return legalMoves(team.ordinal(), -1L, moves);
+    }
+
+
+    /**
+     * @return number of legal moves of color in the current position, which are then in
+     * cachedMoves[color]
+     */
+    private int cachedLegalMoves(int color) {
+        long key = positionKey();
+        if (cachedCounts[color] < 0 || cachedKeys[color] != key) {
+            cachedCounts[color] = legalMoves(color, -1L, cachedMoves[color]);
+            cachedKeys[color] = key;
+        }
+        return cachedCounts[color];
+    }
+
+
+    private void invalidateLegalMoves() {
+        cachedCounts[Bitboards.WHITE] = -1;
+        cachedCounts[Bitboards.BLACK] = -1;
+    }
+
+
+    private int legalMoves(int color, long fromMask, int[] moves) {
+        return PiecesMovesCalculator.generateLegalMoves(board, color, castlingRights, enPassantSquare,
+                fromMask, moves, 0);
+    }
+
+
     public void makeMove(ChessMove move) throws InvalidMoveException {
         if (isGameOver()) {
             throw new InvalidMoveException("The game is over.");
         }
+        if (!Bitboards.onBoard(move.getStartPosition()) || !Bitboards.onBoard(move.getEndPosition())) {
+            throw new InvalidMoveException("Invalid move: " + move);
+        }
 
-        ChessPiece piece = board.getPiece(move.getStartPosition());
-        if (piece == null) {
+        int from = Bitboards.square(move.getStartPosition());
+        int pieceIndex = board.pieceAt(from);
+        if (pieceIndex < 0) {
             throw new InvalidMoveException("No valid moves.");
         }
-        Collection<ChessMove> moves = validMoves(move.getStartPosition());
-        boolean valid = moves.contains(move);
-        boolean turnOfTeam = piece.getTeamColor() == turn;
-
-        if (valid && turnOfTeam) {
-            ChessPiece pieceToMove = piece;
-            if (move.getPromotionPiece() != null) {
-                pieceToMove = new ChessPiece(pieceToMove.getTeamColor(), move.getPromotionPiece());
+        int wanted = PackedMove.fromChessMove(move);
+        int color = Bitboards.colorOf(pieceIndex);
+        int count = cachedLegalMoves(color);
+        int[] moves = cachedMoves[color];
+        int legal = -1;
+        for (int i = 0; i < count && legal < 0; i++) {
+            if (PackedMove.sameMove(moves[i], wanted)) {
+                legal = moves[i];
             }
-            board.addPiece(move.getStartPosition(), null); //Get rid of piece in current position
-            board.addPiece(move.getEndPosition(), pieceToMove);  //Place the piece in the new position
-            setTeamTurn(turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+        }
+        boolean turnOfTeam = Bitboards.colorOf(pieceIndex) == turn.ordinal();
+
+        if (legal >= 0 && turnOfTeam) {
+            doMove(legal);
         } else {
             throw new InvalidMoveException("Invalid move: " + move);
         }
     }
 
 
-    public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPosition = null;
-
-        // Find the position of the king
-        for (int r = 1; r <= 8 && kingPosition == null; r++) {
-            for (int c = 1; c <= 8 && kingPosition == null; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece p = board.getPiece(pos);
-                if (p != null && p.getTeamColor() == teamColor && p.getPieceType() == ChessPiece.PieceType.KING) {
-                    kingPosition = new ChessPosition(r, c);
-                }
+    /**
+     * Plays a packed move without checking that it is legal, for engines that generated it
+     * with {@link #generateMoves(int[])}. Take it back with {@link #unmakeMove()}.
+     *
+     * @param move a {@link PackedMove} for the team to move
+     */
+    public void makeMove(int move) {
+        doMove(move);
+    }
+
+
+    /**
+     * Plays a move without checking that it is legal, recording everything needed to take
+     * it back on the undo stack. Handles captures, promotion, castling and en passant.
+     */
+    void doMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int promotion = PackedMove.promotionCode(move);
+        int moving = board.pieceAt(from);
+        int color = Bitboards.colorOf(moving);
+        ChessPiece.PieceType type = Bitboards.typeOf(moving);
+        int captured = board.pieceAt(to);
+        int flags = captured >= 0 ? PackedMove.CAPTURE : 0;
+        long key = positionKey();
+
+        board.clear(from);
+        if (captured >= 0) {
+            board.clear(to);
+        } else if (type == ChessPiece.PieceType.PAWN && to == enPassantSquare) {
+            int capturedSquare = color == Bitboards.WHITE ? to - 8 : to + 8;
+            captured = board.pieceAt(capturedSquare);
+            board.clear(capturedSquare);
+            flags = PackedMove.CAPTURE | PackedMove.EN_PASSANT;
+        }
+        if (type == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = (from + to) / 2;
+            board.clear(rookFrom);
+            board.put(rookTo, Bitboards.pieceIndex(color, ChessPiece.PieceType.ROOK));
+            flags = PackedMove.CASTLE;
+        }
+        board.put(to, promotion != 0 ? color * Bitboards.PIECE_TYPES + promotion - 1 : moving);
+
+        undo.push(PackedMove.encode(from, to, promotion, flags), captured, castlingRights, enPassantSquare, key);
+        castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        enPassantSquare = type == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16
+                ? (from + to) / 2 : NO_SQUARE;
+        turn = turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+
+    /**
+     * Takes back the most recent move played on this game instance
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (undo.isEmpty()) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        long entry = undo.pop();
+        int move = UndoStack.move(entry);
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+
+        int moved = board.pieceAt(to);
+        int color = Bitboards.colorOf(moved);
+        board.clear(to);
+        if (PackedMove.promotionCode(move) != 0) {
+            moved = Bitboards.pieceIndex(color, ChessPiece.PieceType.PAWN);
+        }
+        board.put(from, moved);
+        if ((flags & PackedMove.CASTLE) != 0) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            board.clear((from + to) / 2);
+            board.put(rookFrom, Bitboards.pieceIndex(color, ChessPiece.PieceType.ROOK));
+        }
+        int captured = UndoStack.captured(entry);
+        if (captured >= 0) {
+            int capturedSquare = to;
+            if ((flags & PackedMove.EN_PASSANT) != 0) {
+                capturedSquare = color == Bitboards.WHITE ? to - 8 : to + 8;
             }
+            board.put(capturedSquare, captured);
         }
-        if (kingPosition == null) {
-            return false;
+
+        castlingRights = UndoStack.castlingRights(entry);
+        enPassantSquare = UndoStack.enPassantSquare(entry);
+        turn = turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+
+    /**
+     * Zobrist key of the full position: pieces, team to move, castling rights and en passant
+     * file. The piece part is updated incrementally as pieces move, so this is a few XORs.
+     *
+     * @return 64-bit key suitable for position caches and repetition detection
+     */
+    public long positionKey() {
+        long key = board.zobristKey() ^ Zobrist.CASTLING[castlingRights];
+        if (turn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        if (enPassantSquare != NO_SQUARE) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassantSquare & 7];
         }
-        // Check if any of the pieces can attack the king
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece p = board.getPiece(pos);
-                if (p == null || p.getTeamColor() == teamColor) {
-                    continue;
-                }
-                for (ChessMove m : p.pieceMoves(board, pos)) {
-                    if (m.getEndPosition().equals(kingPosition)) {
-                        return true;
-                    }
-                }
+        return key;
+    }
+
+
+    /**
+     * @return how many times the current position occurred earlier in the moves played on
+     * this game instance
+     */
+    public int repetitionCount() {
+        long key = positionKey();
+        int count = 0;
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            if (undo.key(i) == key) {
+                count++;
             }
         }
-        return false;
+        return count;
+    }
+
+
+    public boolean isInCheck(TeamColor teamColor) {
+        int color = teamColor.ordinal();
+        long king = board.pieces(color, ChessPiece.PieceType.KING);
+        if (king == 0) {
+            return false;
+        }
+        return PiecesMovesCalculator.isAttacked(board, Long.numberOfTrailingZeros(king), color ^ 1);
+    }
+
+
+    /**
+     * Determines if any piece of the given team attacks a square, whether or not
+     * that square is occupied
+     *
+     * @param position the square to test
+     * @param byTeam   the attacking team
+     * @return True if the square is attacked by byTeam
+     * @throws IllegalArgumentException if the position is off the board
+     */
+    public boolean isSquareAttacked(ChessPosition position, TeamColor byTeam) {
+        return PiecesMovesCalculator.isAttacked(board, PackedMove.square(position), byTeam.ordinal());
     }
 
 
@@ -127,25 +347,123 @@ public class ChessGame {
     }
 
 
+    /**
+     * Works out check, checkmate and stalemate together, from a single king attack query
+     * and a single legal move generation
+     *
+     * @param teamColor which team to evaluate
+     * @return the team's status in the current position
+     */
+    public GameStatus evaluateStatus(TeamColor teamColor) {
+        return new GameStatus(isInCheck(teamColor), cachedLegalMoves(teamColor.ordinal()));
+    }
+
+
     private boolean hasNoValidMoves(TeamColor teamColor) {
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece p = board.getPiece(pos);
-                if (p != null && p.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(pos);
-                    if (moves != null && !moves.isEmpty()) {
-                        return false;
-                    }
-                }
+        return cachedLegalMoves(teamColor.ordinal()) == 0;
+    }
+
+
+    public void setBoard(ChessBoard board) {
+        this.board = board;
+        undo.clear();
+        startPly = 0;
+        invalidateLegalMoves();
+        enPassantSquare = NO_SQUARE;
+        // A king and rook still on their home squares are assumed never to have moved
+        castlingRights = 0;
+        for (int color = Bitboards.WHITE; color <= Bitboards.BLACK; color++) {
+            int home = color == Bitboards.WHITE ? 4 : 60;
+            if (board.pieceAt(home) != Bitboards.pieceIndex(color, ChessPiece.PieceType.KING)) {
+                continue;
+            }
+            int rook = Bitboards.pieceIndex(color, ChessPiece.PieceType.ROOK);
+            if (board.pieceAt(home + 3) == rook) {
+                castlingRights |= color == Bitboards.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            }
+            if (board.pieceAt(home - 4) == rook) {
+                castlingRights |= color == Bitboards.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
             }
         }
-        return true;
     }
 
 
-    public void setBoard(ChessBoard board) {
+    /**
+     * Replaces the whole position, for loaders that know the full game state
+     */
+    void setPosition(ChessBoard board, TeamColor turn, int castlingRights, int enPassantSquare) {
         this.board = board;
+        this.turn = turn;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        undo.clear();
+        startPly = 0;
+        invalidateLegalMoves();
+    }
+
+
+    /**
+     * @return plies (half-moves) played to reach this position, counting any played
+     * before the position was loaded if {@link #setPly(int)} was told about them
+     */
+    public int getPly() {
+        return startPly + undo.size();
+    }
+
+    /**
+     * Sets the ply count of the current position, e.g. for a game restored from a snapshot
+     * taken that many plies in, so later moves are numbered on from it
+     *
+     * @throws IllegalArgumentException if fewer plies than this game's own history
+     */
+    public void setPly(int ply) {
+        if (ply < undo.size()) {
+            throw new IllegalArgumentException("Ply " + ply + " is before this game's own moves");
+        }
+        startPly = ply - undo.size();
+    }
+
+    /**
+     * @return the first ply this game has the move for; moves before it were played
+     * before the position was loaded
+     */
+    public int getFirstRecordedPly() {
+        return startPly + 1;
+    }
+
+    /**
+     * @param ply from {@link #getFirstRecordedPly()} to {@link #getPly()}
+     * @return the move played at that ply, as a {@link PackedMove}
+     * @throws IllegalArgumentException if this game does not have that move
+     */
+    public int getMove(int ply) {
+        if (ply <= startPly || ply > getPly()) {
+            throw new IllegalArgumentException("No move recorded for ply " + ply);
+        }
+        return UndoStack.move(undo.entry(ply - startPly - 1));
+    }
+
+    /**
+     * @param ply from one before {@link #getFirstRecordedPly()} to {@link #getPly()}
+     * @return the {@link #positionKey()} of the position reached after that ply, e.g. to
+     * check that another copy of the game reached the same position
+     * @throws IllegalArgumentException if this game does not have that position
+     */
+    public long getPositionKey(int ply) {
+        if (ply < startPly || ply > getPly()) {
+            throw new IllegalArgumentException("No position recorded for ply " + ply);
+        }
+        return ply == getPly() ? positionKey() : undo.key(ply - startPly);
+    }
+
+
+    int castlingRights() {
+        return castlingRights;
+    }
+
+
+    int enPassantSquare() {
+        return enPassantSquare;
     }
 
 
@@ -165,25 +483,45 @@ public class ChessGame {
     }
 
 
+    /**
+     * The whole game state as one line of FEN: pieces, team to move, castling rights and
+     * en passant square, followed by the move clocks and, once the game is over, "#".
+     * The fullmove number follows {@link #getPly()}; the halfmove clock is not tracked and
+     * is always 0. Compact enough for storage, wire messages and logs.
+     */
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    /**
+     * Builds a game from FEN as written by {@link #toFen()}; plain FEN from other tools
+     * (with or without move clocks) reads as a game in progress. The fullmove number sets
+     * the ply.
+     *
+     * @throws IllegalArgumentException if the text is not a valid FEN position
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.parse(fen);
+    }
+
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
         ChessGame chessGame = (ChessGame) o;
-        return turn == chessGame.turn && Objects.equals(board, chessGame.board);
+        return turn == chessGame.turn && castlingRights == chessGame.castlingRights
+                && enPassantSquare == chessGame.enPassantSquare && Objects.equals(board, chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(turn, board);
+        return Objects.hash(turn, castlingRights, enPassantSquare, board);
     }
 
     @Override
     public String toString() {
-        return "ChessGame{" +
-                "teamTurn=" + turn +
-                ", board=" + board +
-                '}';
+        return "ChessGame{" + toFen() + '}';
     }
 }
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -10,6 +8,14 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            POSITIONS[sq] = new ChessPosition((sq >>> 3) + 1, (sq & 7) + 1);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +24,28 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Returns the shared instance for an on-board position instead of allocating one.
+     * Positions off the board are still created on demand.
+     *
+     * @param row 1 codes for the bottom row
+     * @param col 1 codes for the left column
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return POSITIONS[(row - 1) * 8 + (col - 1)];
+    }
+
+    /**
+     * @param square index from 0 (a1) to 63 (h8)
+     * @return the shared instance for that square
+     */
+    static ChessPosition of(int square) {
+        return POSITIONS[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -45,7 +73,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * row + col;
     }
 
     @Override
@@ -0,0 +1,246 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g.
+ * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1}.
+ * <p>
+ * The fullmove number is written from the game's ply, see {@link ChessGame#getPly()},
+ * and sets it again when read. The halfmove clock is not tracked: it is always written
+ * as 0 and ignored when read. Both clocks are optional when reading. A finished game
+ * gets one extra field, {@code #}, after the clocks. Both directions walk the text a
+ * character at a time, so the only allocations are the result and, when writing, one
+ * string builder.
+ */
+final class Fen {
+
+    static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    static final char GAME_OVER = '#';
+
+    private static final char[] PIECE_CHARS = {'K', 'Q', 'B', 'N', 'R', 'P', 'k', 'q', 'b', 'n', 'r', 'p'};
+
+    private Fen() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a valid FEN position
+     */
+    static ChessGame parse(String fen) {
+        int length = fen.length();
+        int start = skipSpaces(fen, 0);
+        int end = fieldEnd(fen, start);
+        ChessBoard board = parsePlacement(fen, start, end);
+
+        start = skipSpaces(fen, end);
+        end = fieldEnd(fen, start);
+        if (end - start != 1) {
+            throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+        }
+        ChessGame.TeamColor turn = switch (fen.charAt(start)) {
+            case 'w' -> ChessGame.TeamColor.WHITE;
+            case 'b' -> ChessGame.TeamColor.BLACK;
+            default -> throw new IllegalArgumentException("Bad FEN side to move: " + fen);
+        };
+
+        start = skipSpaces(fen, end);
+        end = fieldEnd(fen, start);
+        if (start == end) {
+            throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+        }
+        int castling = 0;
+        for (int i = start; i < end; i++) {
+            castling |= switch (fen.charAt(i)) {
+                case 'K' -> ChessGame.WHITE_KINGSIDE;
+                case 'Q' -> ChessGame.WHITE_QUEENSIDE;
+                case 'k' -> ChessGame.BLACK_KINGSIDE;
+                case 'q' -> ChessGame.BLACK_QUEENSIDE;
+                case '-' -> 0;
+                default -> throw new IllegalArgumentException("Bad FEN castling rights: " + fen);
+            };
+        }
+
+        start = skipSpaces(fen, end);
+        end = fieldEnd(fen, start);
+        int enPassant = ChessGame.NO_SQUARE;
+        if (end - start == 2) {
+            int col = fen.charAt(start) - 'a' + 1;
+            int row = fen.charAt(start + 1) - '0';
+            if (col < 1 || col > 8 || (row != 3 && row != 6)) {
+                throw new IllegalArgumentException("Bad FEN en passant square: " + fen);
+            }
+            enPassant = Bitboards.square(row, col);
+        } else if (end - start != 1 || fen.charAt(start) != '-') {
+            throw new IllegalArgumentException(start == end ? "FEN needs at least 4 fields: " + fen
+                    : "Bad FEN en passant square: " + fen);
+        }
+
+        // Optional move clocks, then the optional game over marker
+        boolean gameOver = false;
+        int clocks = 0;
+        int fullmove = 1;
+        for (start = skipSpaces(fen, end); start < length; start = skipSpaces(fen, end)) {
+            end = fieldEnd(fen, start);
+            if (end - start == 1 && fen.charAt(start) == GAME_OVER) {
+                gameOver = true;
+            } else if (gameOver || clocks == 2 || !isNumber(fen, start, end) || end - start > 6) {
+                throw new IllegalArgumentException("Bad FEN trailing field: " + fen);
+            } else if (++clocks == 2) {
+                fullmove = Math.max(1, Integer.parseInt(fen, start, end, 10));
+            }
+        }
+
+        ChessGame game = new ChessGame();
+        game.setPosition(board, turn, castling, enPassant);
+        game.setPly(2 * (fullmove - 1) + (turn == ChessGame.TeamColor.BLACK ? 1 : 0));
+        game.setGameOver(gameOver);
+        return game;
+    }
+
+    /**
+     * Reads the piece placement field alone, e.g. {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR}
+     *
+     * @throws IllegalArgumentException if the text is not a valid placement
+     */
+    static ChessBoard parsePlacement(String placement) {
+        int start = skipSpaces(placement, 0);
+        int end = fieldEnd(placement, start);
+        if (skipSpaces(placement, end) != placement.length()) {
+            throw new IllegalArgumentException("Bad FEN placement: " + placement);
+        }
+        return parsePlacement(placement, start, end);
+    }
+
+    private static ChessBoard parsePlacement(String text, int start, int end) {
+        ChessBoard board = new ChessBoard();
+        int row = 8;
+        int col = 1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw new IllegalArgumentException("Bad FEN placement: " + text);
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int pieceIndex = pieceIndex(c);
+                if (pieceIndex < 0 || col > 8) {
+                    throw new IllegalArgumentException("Bad FEN placement: " + text);
+                }
+                board.put(Bitboards.square(row, col), pieceIndex);
+                col++;
+            }
+            if (col > 9) {
+                throw new IllegalArgumentException("Bad FEN placement: " + text);
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw new IllegalArgumentException("Bad FEN placement: " + text);
+        }
+        return board;
+    }
+
+    static String format(ChessGame game) {
+        StringBuilder fen = new StringBuilder(96);
+        appendPlacement(fen, game.getBoard());
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        int castling = game.castlingRights();
+        if (castling == 0) {
+            fen.append('-');
+        } else {
+            appendIf(fen, castling, ChessGame.WHITE_KINGSIDE, 'K');
+            appendIf(fen, castling, ChessGame.WHITE_QUEENSIDE, 'Q');
+            appendIf(fen, castling, ChessGame.BLACK_KINGSIDE, 'k');
+            appendIf(fen, castling, ChessGame.BLACK_QUEENSIDE, 'q');
+        }
+        int enPassant = game.enPassantSquare();
+        if (enPassant == ChessGame.NO_SQUARE) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + Bitboards.column(enPassant) - 1)).append(Bitboards.row(enPassant));
+        }
+        fen.append(" 0 ").append(game.getPly() / 2 + 1);
+        if (game.isGameOver()) {
+            fen.append(' ').append(GAME_OVER);
+        }
+        return fen.toString();
+    }
+
+    /**
+     * @return the piece placement field alone
+     */
+    static String formatPlacement(ChessBoard board) {
+        StringBuilder placement = new StringBuilder(72);
+        appendPlacement(placement, board);
+        return placement.toString();
+    }
+
+    private static void appendPlacement(StringBuilder out, ChessBoard board) {
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                int pieceIndex = board.pieceAt(Bitboards.square(row, col));
+                if (pieceIndex < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                out.append(PIECE_CHARS[pieceIndex]);
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                out.append('/');
+            }
+        }
+    }
+
+    private static void appendIf(StringBuilder out, int rights, int right, char c) {
+        if ((rights & right) != 0) {
+            out.append(c);
+        }
+    }
+
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int fieldEnd(String text, int i) {
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNumber(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int pieceIndex(char c) {
+        int color = Character.isUpperCase(c) ? Bitboards.WHITE : Bitboards.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> null;
+        };
+        return type == null ? -1 : Bitboards.pieceIndex(color, type);
+    }
+}
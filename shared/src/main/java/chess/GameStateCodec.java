@@ -0,0 +1,161 @@
+package chess;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary form of a game's state for storage and replication, 28 bytes for the starting
+ * position and never more than {@link #MAX_SIZE}:
+ * <pre>
+ * byte  0     format version
+ * byte  1     bit 0 black to move, bit 1 game over, bits 4-7 castling rights
+ * byte  2     en passant square + 1, or 0
+ * bytes 3-10  occupied squares as a bitboard (bit 0 = a1), big-endian
+ * then        one 4-bit piece index per occupied square in square order, two per byte,
+ *             low nibble first
+ * then        the ply, see {@link ChessGame#getPly()}, 7 bits per byte with the low bits
+ *             first and the top bit set on every byte but the last
+ * </pre>
+ * Encoding and decoding go straight between the board's bitboards and the buffer.
+ * The moves themselves are not kept, so a decoded game's first recorded ply is the one
+ * after the encoded ply. Version 1, written before the ply was added, is still read,
+ * with ply 0.
+ */
+public final class GameStateCodec {
+
+    public static final int MAX_SIZE = 3 + Long.BYTES + 32 + 5;
+
+    private static final byte VERSION = 2, VERSION_WITHOUT_PLY = 1;
+    private static final int BLACK_TO_MOVE = 1, GAME_OVER = 2;
+
+    private GameStateCodec() {
+    }
+
+    /**
+     * @return the number of bytes {@link #encode(ChessGame, ByteBuffer)} will write
+     */
+    public static int encodedSize(ChessGame game) {
+        int plyBytes = 1;
+        for (int ply = game.getPly() >>> 7; ply != 0; ply >>>= 7) {
+            plyBytes++;
+        }
+        return 3 + Long.BYTES + (Long.bitCount(game.getBoard().occupied()) + 1) / 2 + plyBytes;
+    }
+
+    public static byte[] encode(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(game));
+        encode(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the game at the buffer's position, advancing it
+     *
+     * @throws BufferOverflowException if fewer than {@link #encodedSize(ChessGame)} bytes remain
+     */
+    public static void encode(ChessGame game, ByteBuffer out) {
+        ChessBoard board = game.getBoard();
+        int flags = (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0)
+                | (game.isGameOver() ? GAME_OVER : 0)
+                | game.castlingRights() << 4;
+        long occupied = board.occupied();
+        out.put(VERSION)
+                .put((byte) flags)
+                .put((byte) (game.enPassantSquare() + 1))
+                .putLong(occupied);
+
+        int pending = -1;
+        while (occupied != 0) {
+            int sq = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int pieceIndex = board.pieceAt(sq);
+            if (pending < 0) {
+                pending = pieceIndex;
+            } else {
+                out.put((byte) (pending | pieceIndex << 4));
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            out.put((byte) pending);
+        }
+
+        int ply = game.getPly();
+        while (ply >>> 7 != 0) {
+            out.put((byte) (ply & 0x7F | 0x80));
+            ply >>>= 7;
+        }
+        out.put((byte) ply);
+    }
+
+    public static ChessGame decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a game from the buffer's position, advancing it past the encoded game
+     *
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != VERSION && version != VERSION_WITHOUT_PLY) {
+                throw new IllegalArgumentException("Unknown game state version " + version);
+            }
+            int flags = in.get() & 0xFF;
+            int enPassant = (in.get() & 0xFF) - 1;
+            long occupied = in.getLong();
+            if (enPassant >= 64) {
+                throw new IllegalArgumentException("Bad en passant square " + enPassant);
+            }
+
+            ChessBoard board = new ChessBoard();
+            int packed = 0;
+            boolean high = false;
+            while (occupied != 0) {
+                int sq = Long.numberOfTrailingZeros(occupied);
+                occupied &= occupied - 1;
+                int pieceIndex;
+                if (high) {
+                    pieceIndex = packed >>> 4;
+                } else {
+                    packed = in.get() & 0xFF;
+                    pieceIndex = packed & 15;
+                }
+                high = !high;
+                if (pieceIndex >= Bitboards.PIECE_KINDS) {
+                    throw new IllegalArgumentException("Bad piece index " + pieceIndex);
+                }
+                board.put(sq, pieceIndex);
+            }
+
+            ChessGame game = new ChessGame();
+            game.setPosition(board, (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE,
+                    flags >>> 4, enPassant);
+            game.setGameOver((flags & GAME_OVER) != 0);
+            if (version != VERSION_WITHOUT_PLY) {
+                game.setPly(readPly(in));
+            }
+            return game;
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Game state is truncated", ex);
+        }
+    }
+
+    private static int readPly(ByteBuffer in) {
+        int ply = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int next = in.get() & 0xFF;
+            ply |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                if (ply < 0) {
+                    throw new IllegalArgumentException("Bad ply " + Integer.toUnsignedString(ply));
+                }
+                return ply;
+            }
+        }
+        throw new IllegalArgumentException("Ply is longer than 5 bytes");
+    }
+}
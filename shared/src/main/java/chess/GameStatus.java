@@ -0,0 +1,26 @@
+package chess;
+
+/**
+ * Where a team stands in the current position, as returned by
+ * {@link ChessGame#evaluateStatus(ChessGame.TeamColor)}
+ *
+ * @param inCheck        the team's king is attacked
+ * @param legalMoveCount number of legal moves the team has
+ */
+public record GameStatus(boolean inCheck, int legalMoveCount) {
+
+    public boolean isCheckmate() {
+        return inCheck && legalMoveCount == 0;
+    }
+
+    public boolean isStalemate() {
+        return !inCheck && legalMoveCount == 0;
+    }
+
+    /**
+     * @return True if the team can no longer move, by checkmate or stalemate
+     */
+    public boolean isGameOver() {
+        return legalMoveCount == 0;
+    }
+}
@@ -0,0 +1,133 @@
+package chess;
+
+/**
+ * Encodes a move in a single int so move lists can live in a plain {@code int[]}
+ * instead of collections of {@link ChessMove} objects.
+ * <pre>
+ * bits  0-5   from square (0 = a1, 7 = h1, 63 = h8)
+ * bits  6-11  to square
+ * bits 12-14  promotion piece type ordinal + 1, or 0 for no promotion
+ * bits 15-17  flags: CAPTURE, EN_PASSANT, CASTLE
+ * </pre>
+ * Flags are informational; {@link ChessGame#makeMove(int)} works out captures,
+ * castling and en passant from the board, so a move converted from a
+ * {@link ChessMove} (which carries no flags) plays the same way.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1, EN_PASSANT = 2, CASTLE = 4;
+
+    /**
+     * Large enough for the legal moves of any reachable position (the known maximum is 218)
+     */
+    public static final int MAX_MOVES = 256;
+
+    static final int MOVE_BITS = 18;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        return from | to << 6 | (promotion == null ? 0 : promotion.ordinal() + 1) << 12 | flags << 15;
+    }
+
+    static int encode(int from, int to, int promotionCode, int flags) {
+        return from | to << 6 | promotionCode << 12 | flags << 15;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    public static ChessPiece.PieceType promotion(int move) {
+        int code = move >>> 12 & 7;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    static int promotionCode(int move) {
+        return move >>> 12 & 7;
+    }
+
+    public static int flags(int move) {
+        return move >>> 15 & 7;
+    }
+
+    /**
+     * @return True if both encode the same from, to and promotion, ignoring flags
+     */
+    public static boolean sameMove(int a, int b) {
+        return (a & 0x7FFF) == (b & 0x7FFF);
+    }
+
+    /**
+     * @return square index (0 = a1, 63 = h8) of a position
+     * @throws IllegalArgumentException if the position is off the board
+     */
+    public static int square(ChessPosition position) {
+        if (!Bitboards.onBoard(position)) {
+            throw new IllegalArgumentException("Off the board: " + position);
+        }
+        return Bitboards.square(position);
+    }
+
+    public static ChessPosition position(int square) {
+        return Bitboards.position(square);
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(position(from(move)), position(to(move)), promotion(move));
+    }
+
+    public static int fromChessMove(ChessMove move) {
+        return encode(square(move.getStartPosition()), square(move.getEndPosition()), move.getPromotionPiece(), 0);
+    }
+
+    /**
+     * @return the move in coordinate notation, e.g. "e2e4" or "e7e8q"
+     */
+    public static String toString(int move) {
+        String text = position(from(move)).toString() + position(to(move));
+        ChessPiece.PieceType promotion = promotion(move);
+        if (promotion == null) {
+            return text;
+        }
+        return text + (promotion == ChessPiece.PieceType.KNIGHT ? 'n' : Character.toLowerCase(promotion.name().charAt(0)));
+    }
+
+    /**
+     * Reads coordinate notation as written by {@link #toString(int)}, without flags
+     *
+     * @throws IllegalArgumentException if the text is not a move
+     */
+    public static int parse(String text) {
+        if (text.length() != 4 && text.length() != 5) {
+            throw new IllegalArgumentException("Bad move: " + text);
+        }
+        ChessPiece.PieceType promotion = null;
+        if (text.length() == 5) {
+            promotion = switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new IllegalArgumentException("Bad promotion piece: " + text);
+            };
+        }
+        return encode(parseSquare(text, 0), parseSquare(text, 2), promotion, 0);
+    }
+
+    private static int parseSquare(String text, int offset) {
+        int col = text.charAt(offset) - 'a' + 1;
+        int row = text.charAt(offset + 1) - '0';
+        if (col < 1 || col > 8 || row < 1 || row > 8) {
+            throw new IllegalArgumentException("Bad square in move: " + text);
+        }
+        return Bitboards.square(row, col);
+    }
+}
@@ -0,0 +1,245 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth ("perft"). The counts
+ * for well known positions are published, so matching them checks the move generator,
+ * and timing them gives its raw throughput.
+ * <p>
+ * Run {@code main} with no arguments to time the reference suite, with
+ * {@code perft <depth> [fen]} to count one position, with {@code divide <depth> [fen]}
+ * to print the count below each root move, with {@code parallel <depth> [fen]} to count
+ * on every core, or with {@code scale <depth> [fen]} to time the parallel count at
+ * 1, 2, 4, ... threads up to the number of cores.
+ */
+public final class Perft {
+
+    /**
+     * A published position with its node counts for depth 1, 2, 3, ...
+     */
+    public record Reference(String name, String fen, long... nodes) {
+        public ChessGame game() {
+            return Fen.parse(fen);
+        }
+
+        public int maxDepth() {
+            return nodes.length;
+        }
+
+        public long nodes(int depth) {
+            return nodes[depth - 1];
+        }
+    }
+
+    // Node counts from the Chess Programming Wiki perft results page
+    public static final List<Reference> REFERENCE_POSITIONS = List.of(
+            new Reference("start", Fen.START_POSITION,
+                    20L, 400L, 8_902L, 197_281L, 4_865_609L, 119_060_324L),
+            new Reference("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48L, 2_039L, 97_862L, 4_085_603L, 193_690_690L),
+            new Reference("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14L, 191L, 2_812L, 43_238L, 674_624L, 11_030_083L),
+            new Reference("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6L, 264L, 9_467L, 422_333L, 15_833_292L),
+            new Reference("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44L, 1_486L, 62_379L, 2_103_487L, 89_941_194L),
+            new Reference("position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46L, 2_079L, 89_890L, 3_894_594L, 164_075_551L)
+    );
+
+    private static final long SUITE_NODE_LIMIT = 20_000_000L;
+
+    // Below this many remaining plies a subtree is too small to be worth a task of its own
+    private static final int MIN_SPLIT_DEPTH = 3;
+
+    private Perft() {
+    }
+
+    /**
+     * Counts the positions reachable in exactly depth plies. The game is played forward
+     * and back with makeMove/unmakeMove, so it ends in the position it started in.
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return perft(game, depth, new int[depth + 1][PackedMove.MAX_MOVES]);
+    }
+
+    static long perft(ChessGame game, int depth, int[][] buffers) {
+        int[] moves = buffers[depth];
+        int count = game.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            nodes += perft(game, depth - 1, buffers);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the perft count below each legal root move, keyed by the move in coordinate
+     * notation (e.g. "e2e4"), in generation order
+     */
+    public static Map<String, Long> divide(ChessGame game, int depth) {
+        int[][] buffers = new int[Math.max(depth, 1) + 1][PackedMove.MAX_MOVES];
+        int[] moves = new int[PackedMove.MAX_MOVES];
+        int count = game.generateMoves(moves);
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            result.put(PackedMove.toString(moves[i]), depth <= 1 ? 1L : perft(game, depth - 1, buffers));
+            game.unmakeMove();
+        }
+        return result;
+    }
+
+    /**
+     * Counts like {@link #perft(ChessGame, int)} on the common fork-join pool, splitting
+     * the root moves and, for deep searches, the replies to them into separate tasks
+     */
+    public static long parallelPerft(ChessGame game, int depth) {
+        return parallelPerft(game, depth, ForkJoinPool.commonPool());
+    }
+
+    public static long parallelPerft(ChessGame game, int depth, ForkJoinPool pool) {
+        return parallelPerft(game, depth, depth >= 5 ? 2 : 1, pool);
+    }
+
+    /**
+     * @param splitPlies how many plies below the root get a task per move; deeper plies are
+     *                   counted sequentially within their task
+     */
+    public static long parallelPerft(ChessGame game, int depth, int splitPlies, ForkJoinPool pool) {
+        return pool.invoke(new PerftTask(new ChessGame(game), depth, splitPlies));
+    }
+
+    /**
+     * Counts one subtree. Every task owns its game: children are handed a copy with
+     * their move already made, so no board is ever shared between threads.
+     */
+    private static final class PerftTask extends RecursiveTask<Long> {
+        private final ChessGame game;
+        private final int depth;
+        private final int splitPlies;
+
+        PerftTask(ChessGame game, int depth, int splitPlies) {
+            this.game = game;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+        }
+
+        @Override
+        protected Long compute() {
+            if (splitPlies <= 0 || depth < MIN_SPLIT_DEPTH) {
+                return perft(game, depth);
+            }
+            int[] moves = new int[PackedMove.MAX_MOVES];
+            int count = game.generateMoves(moves);
+            List<PerftTask> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ChessGame child = new ChessGame(game);
+                child.makeMove(moves[i]);
+                children.add(new PerftTask(child, depth - 1, splitPlies - 1));
+            }
+            long nodes = 0;
+            for (PerftTask child : invokeAll(children)) {
+                nodes += child.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            runSuite();
+            return;
+        }
+        if (args.length < 2) {
+            System.out.println("Usage: Perft [perft|divide|parallel|scale <depth> [fen]]");
+            return;
+        }
+        int depth = Integer.parseInt(args[1]);
+        String fen = args.length > 2 ? String.join(" ", List.of(args).subList(2, args.length)) : Fen.START_POSITION;
+        ChessGame game = Fen.parse(fen);
+        if (args[0].equals("scale")) {
+            runScaling(game, depth);
+            return;
+        }
+        long start = System.nanoTime();
+        long nodes;
+        if (args[0].equals("parallel")) {
+            nodes = parallelPerft(game, depth);
+        } else if (args[0].equals("divide")) {
+            nodes = 0;
+            for (Map.Entry<String, Long> entry : divide(game, depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        } else {
+            nodes = perft(game, depth);
+        }
+        report("perft(" + depth + ")", nodes, System.nanoTime() - start);
+    }
+
+    private static void runSuite() {
+        long totalNodes = 0;
+        long totalTime = 0;
+        boolean allPassed = true;
+        for (Reference reference : REFERENCE_POSITIONS) {
+            for (int depth = 1; depth <= reference.maxDepth(); depth++) {
+                long expected = reference.nodes(depth);
+                if (expected > SUITE_NODE_LIMIT) {
+                    break;
+                }
+                long start = System.nanoTime();
+                long nodes = perft(reference.game(), depth);
+                long elapsed = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalTime += elapsed;
+                boolean passed = nodes == expected;
+                allPassed &= passed;
+                report("%-10s d%d %s".formatted(reference.name(), depth,
+                        passed ? "ok  " : "FAIL (expected " + expected + ")"), nodes, elapsed);
+            }
+        }
+        report("total" + (allPassed ? "" : " (FAILURES)"), totalNodes, totalTime);
+    }
+
+    private static void runScaling(ChessGame game, int depth) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        long expected = perft(game, depth);
+        report("sequential", expected, System.nanoTime() - start);
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                start = System.nanoTime();
+                long nodes = parallelPerft(game, depth, pool);
+                report(threads + " thread(s)" + (nodes == expected ? "" : " MISMATCH"), nodes,
+                        System.nanoTime() - start);
+            } finally {
+                pool.shutdown();
+            }
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    private static void report(String label, long nodes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-40s %,14d nodes %9.3f s %,14.0f nps%n", label, nodes, seconds,
+                seconds > 0 ? nodes / seconds : 0);
+    }
+}
@@ -4,205 +4,274 @@ public class PiecesMovesCalculator {
 
     public static final int BOARD_MIN = 1, BOARD_MAX = 8;
 
-    private static Boolean onBoard(int row, int col) {
-        return row >= BOARD_MIN && row <= BOARD_MAX &&
-                col >= BOARD_MIN && col <= BOARD_MAX;
-    }
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK
+    };
 
     public static java.util.Collection<ChessMove> calculateMoves(ChessBoard board, ChessPosition position) {
-        ChessPiece piece = board.getPiece(position);
-        if (piece == null) {
+        int from = Bitboards.square(position);
+        int pieceIndex = board.pieceAt(from);
+        if (pieceIndex < 0) {
             return java.util.Collections.emptyList();
         }
 
-        switch (piece.getPieceType()) {
-            case BISHOP:
-                return bishopMoves(board, position, piece);
-            case ROOK:
-                return rookMoves(board, position, piece);
-            case QUEEN:
-                return queenMoves(board, position, piece);
-            case KING:
-                return kingMoves(board, position, piece);
-            case KNIGHT:
-                return knightMoves(board, position, piece);
-            case PAWN:
-                return pawnMoves(board, position, piece);
-            default:
-                return java.util.Collections.emptyList();
+        long targets = targets(board, pieceIndex, from);
+        java.util.List<ChessMove> moves = new java.util.ArrayList<>(Long.bitCount(targets));
+        boolean pawn = Bitboards.typeOf(pieceIndex) == ChessPiece.PieceType.PAWN;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            ChessPosition target = Bitboards.position(to);
+            if (pawn && ((1L << to) & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    moves.add(new ChessMove(position, target, promotion));
+                }
+            } else {
+                moves.add(new ChessMove(position, target, null));
+            }
         }
+        return moves;
     }
 
-    private static java.util.Collection<ChessMove> slidingPiece(ChessBoard board,
-                                                                ChessPosition position,
-                                                                ChessPiece piece,
-                                                                int[][] directions) {
-        java.util.List<ChessMove> moves = new java.util.ArrayList<>();
-        for (int[] dir : directions) {
-            int r = position.getRow() + dir[0];
-            int c = position.getColumn() + dir[1];
-            while (onBoard(r,c)) {
-                ChessPosition target = new ChessPosition(r,c);
-                ChessPiece occupant = board.getPiece(target);
-                if (occupant == null) {
-                    moves.add(new ChessMove(position, target, null));
-                } else {
-                    if (occupant.getTeamColor() != piece.getTeamColor()) {
-                        moves.add(new ChessMove(position, target, null));
-                    }
-                    break;
-                }
-                r += dir[0];
-                c += dir[1];
+    /**
+     * Writes the pseudo-legal moves of color's pieces on fromMask into moves as packed ints,
+     * including castling and en passant. Castling is only emitted when it is fully legal;
+     * every other move still needs a legality check.
+     *
+     * @return the new number of moves in the buffer
+     */
+    static int generateMoves(ChessBoard board, int color, int castlingRights, int enPassantSquare,
+                             long fromMask, int[] moves, int count) {
+        long pieces = board.occupancy(color) & fromMask;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            int pieceIndex = board.pieceAt(from);
+            long targets = targets(board, pieceIndex, from);
+            boolean pawn = Bitboards.typeOf(pieceIndex) == ChessPiece.PieceType.PAWN;
+            if (pawn && enPassantSquare >= 0 && canCaptureEnPassant(board, color, from, enPassantSquare)) {
+                moves[count++] = PackedMove.encode(from, enPassantSquare, 0,
+                        PackedMove.CAPTURE | PackedMove.EN_PASSANT);
             }
+            count = addMoves(board, color, from, pawn, targets, moves, count);
         }
-        return moves;
+        if ((board.pieces(color, ChessPiece.PieceType.KING) & fromMask) != 0) {
+            count = generateCastling(board, color, castlingRights, moves, count);
+        }
+        return count;
     }
 
-    private static java.util.Collection<ChessMove> jumpingPiece(ChessBoard board,
-                                                                ChessPosition position,
-                                                                ChessPiece piece,
-                                                                int[][] jumps) {
-        java.util.List<ChessMove> moves = new java.util.ArrayList<>();
-        for (int[] jump : jumps) {
-            int r = position.getRow() + jump[0];
-            int c = position.getColumn() + jump[1];
-            if (onBoard(r,c)) {
-                ChessPosition target = new ChessPosition(r,c);
-                ChessPiece occupant = board.getPiece(target);
-                if (occupant == null || occupant.getTeamColor() != piece.getTeamColor()) {
-                    moves.add(new ChessMove(position, target, null));
+    /**
+     * Writes only the legal moves of color's pieces on fromMask into moves, without playing
+     * any of them. Checkers and pinned pieces are found up front: in double check only the
+     * king moves, in single check other pieces must capture the checker or block, pinned
+     * pieces stay on the line to their king, and the king never steps onto an attacked square.
+     * En passant, which can uncover an attack along the rank, is tested against the board as
+     * it would be after the capture.
+     *
+     * @return the new number of moves in the buffer
+     */
+    static int generateLegalMoves(ChessBoard board, int color, int castlingRights, int enPassantSquare,
+                                  long fromMask, int[] moves, int count) {
+        long kingBit = board.pieces(color, ChessPiece.PieceType.KING);
+        if (kingBit == 0) {
+            // Nothing can be left in check, so every pseudo-legal move is legal
+            return generateMoves(board, color, castlingRights, enPassantSquare, fromMask, moves, count);
+        }
+        int king = Long.numberOfTrailingZeros(kingBit);
+        int enemy = color ^ 1;
+        long own = board.occupancy(color);
+        long occupied = board.occupied();
+
+        if ((kingBit & fromMask) != 0) {
+            long targets = Bitboards.KING_ATTACKS[king] & ~own;
+            long withoutKing = occupied ^ kingBit;
+            long enemies = board.occupancy(enemy);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                // Lift the king off the board so a slider's attack is not blocked by the king itself
+                if (attackersOf(board, to, enemy, withoutKing) == 0) {
+                    moves[count++] = PackedMove.encode(king, to, 0,
+                            (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE : 0);
                 }
             }
         }
-        return moves;
+
+        long checkers = attackersOf(board, king, enemy, occupied);
+        if (Long.bitCount(checkers) > 1) {
+            return count;
+        }
+        // Squares a non-king move has to land on: anywhere, or on the checker or between it and the king
+        long evasions = checkers == 0 ? -1L
+                : checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        long pinned = pinnedPieces(board, color, king, occupied);
+
+        long pieces = own & ~kingBit & fromMask;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            int pieceIndex = board.pieceAt(from);
+            long targets = targets(board, pieceIndex, from) & evasions;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Bitboards.LINE[king][from];
+            }
+            boolean pawn = Bitboards.typeOf(pieceIndex) == ChessPiece.PieceType.PAWN;
+            if (pawn && enPassantSquare >= 0 && canCaptureEnPassant(board, color, from, enPassantSquare)
+                    && isLegalEnPassant(board, color, king, from, enPassantSquare)) {
+                moves[count++] = PackedMove.encode(from, enPassantSquare, 0,
+                        PackedMove.CAPTURE | PackedMove.EN_PASSANT);
+            }
+            count = addMoves(board, color, from, pawn, targets, moves, count);
+        }
+        if ((kingBit & fromMask) != 0 && checkers == 0) {
+            count = generateCastling(board, color, castlingRights, moves, count);
+        }
+        return count;
     }
 
-    private static java.util.Collection<ChessMove> bishopMoves(ChessBoard board,
-                                                               ChessPosition position,
-                                                               ChessPiece bishop) {
-        int[][] directions = {
-                {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
-        };
-        return slidingPiece(board,position, bishop, directions);
+    private static int addMoves(ChessBoard board, int color, int from, boolean pawn, long targets,
+                                int[] moves, int count) {
+        long enemy = board.occupancy(color ^ 1);
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = (enemy & (1L << to)) != 0 ? PackedMove.CAPTURE : 0;
+            if (pawn && ((1L << to) & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    moves[count++] = PackedMove.encode(from, to, promotion, flags);
+                }
+            } else {
+                moves[count++] = PackedMove.encode(from, to, 0, flags);
+            }
+        }
+        return count;
     }
 
-    private static java.util.Collection<ChessMove> rookMoves(ChessBoard board,
-                                                             ChessPosition position,
-                                                             ChessPiece rook) {
-        int[][] directions = {
-                {1, 0}, {-1, 0}, {0, 1}, {0, -1}
-        };
-        return slidingPiece(board, position, rook, directions);
+    /**
+     * @return color's pieces that are the only piece between their king and an enemy slider
+     */
+    private static long pinnedPieces(ChessBoard board, int color, int king, long occupied) {
+        int enemy = color ^ 1;
+        long enemies = board.occupancy(enemy);
+        long queens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        // Enemy sliders that would attack the king if only enemy pieces blocked the way
+        long snipers = (Bitboards.rookAttacks(king, enemies)
+                & (board.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, enemies)
+                & (board.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+        long own = board.occupancy(color);
+        long pinned = 0;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
     }
 
-    private static java.util.Collection<ChessMove> queenMoves(ChessBoard board,
-                                                              ChessPosition position,
-                                                              ChessPiece queen) {
-        int[][] directions = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
-        return slidingPiece(board, position, queen, directions);
+    private static boolean isLegalEnPassant(ChessBoard board, int color, int king, int from, int enPassantSquare) {
+        int capturedSquare = color == Bitboards.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+        long after = board.occupied() ^ (1L << from) ^ (1L << capturedSquare) | (1L << enPassantSquare);
+        return (attackersOf(board, king, color ^ 1, after) & ~(1L << capturedSquare)) == 0;
     }
 
-    private static java.util.Collection<ChessMove> kingMoves(ChessBoard board,
-                                                             ChessPosition position,
-                                                             ChessPiece king) {
-        int[][] jumps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
-        return jumpingPiece(board, position, king, jumps);
+    private static boolean canCaptureEnPassant(ChessBoard board, int color, int from, int enPassantSquare) {
+        if ((Bitboards.PAWN_ATTACKS[color][from] & (1L << enPassantSquare)) == 0) {
+            return false;
+        }
+        // The square behind a double-pushed pawn is on row 6 for white captures and row 3 for black
+        int capturedSquare = color == Bitboards.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+        int expectedRow = color == Bitboards.WHITE ? 6 : 3;
+        return Bitboards.row(enPassantSquare) == expectedRow
+                && board.pieceAt(capturedSquare) == Bitboards.pieceIndex(color ^ 1, ChessPiece.PieceType.PAWN);
     }
 
-    private static java.util.Collection<ChessMove> knightMoves(ChessBoard board,
-                                                               ChessPosition position,
-                                                               ChessPiece knight) {
-        int[][] jumps = {{2, 1}, {1, 2},
-                {-1, 2}, {-2, 1},
-                {-1, -2}, {-2, -1},
-                {1, -2}, {2, -1}};
-        return jumpingPiece(board, position, knight, jumps);
+    private static int generateCastling(ChessBoard board, int color, int castlingRights, int[] moves, int count) {
+        int home = color == Bitboards.WHITE ? 4 : 60;
+        int kingside = color == Bitboards.WHITE ? ChessGame.WHITE_KINGSIDE : ChessGame.BLACK_KINGSIDE;
+        int queenside = color == Bitboards.WHITE ? ChessGame.WHITE_QUEENSIDE : ChessGame.BLACK_QUEENSIDE;
+        if ((castlingRights & (kingside | queenside)) == 0
+                || board.pieceAt(home) != Bitboards.pieceIndex(color, ChessPiece.PieceType.KING)
+                || isAttacked(board, home, color ^ 1)) {
+            return count;
+        }
+        long rooks = board.pieces(color, ChessPiece.PieceType.ROOK);
+        long occupied = board.occupied();
+        if ((castlingRights & kingside) != 0 && (rooks & (1L << (home + 3))) != 0
+                && (occupied & (3L << (home + 1))) == 0
+                && !isAttacked(board, home + 1, color ^ 1) && !isAttacked(board, home + 2, color ^ 1)) {
+            moves[count++] = PackedMove.encode(home, home + 2, 0, PackedMove.CASTLE);
+        }
+        if ((castlingRights & queenside) != 0 && (rooks & (1L << (home - 4))) != 0
+                && (occupied & (7L << (home - 3))) == 0
+                && !isAttacked(board, home - 1, color ^ 1) && !isAttacked(board, home - 2, color ^ 1)) {
+            moves[count++] = PackedMove.encode(home, home - 2, 0, PackedMove.CASTLE);
+        }
+        return count;
     }
 
-    private static java.util.Collection<ChessMove> pawnMoves(ChessBoard board,
-                                                             ChessPosition position,
-                                                             ChessPiece pawn) {
-        java.util.List<ChessMove> moves = new java.util.ArrayList<>();
-        int oldR = position.getRow(), r, r2 = 0;
-        int c = position.getColumn(), cLeft = position.getColumn() - 1, cRight = position.getColumn() + 1;
-        boolean isWhite = (pawn.getTeamColor() == ChessGame.TeamColor.WHITE);
-        ChessPosition targetLeft, targetRight;
-        ChessPiece occupantLeft, occupantRight;
-
-        // std_move (white)
-        if (isWhite) {
-            if (oldR == 2) {
-                r2 = oldR + 2;
-            }
-            r = oldR + 1;
+    /**
+     * Squares the piece on sq could move to, ignoring whether the move leaves its king in check
+     */
+    static long targets(ChessBoard board, int pieceIndex, int sq) {
+        int color = Bitboards.colorOf(pieceIndex);
+        long own = board.occupancy(color);
+        if (Bitboards.typeOf(pieceIndex) != ChessPiece.PieceType.PAWN) {
+            return attacks(board, pieceIndex, sq) & ~own;
         }
-        else // std_move (black)
-        {
-            if (oldR == 7) {
-                r2 = oldR - 2;
-            }
-            r = oldR - 1;
-        }
-
-        if (onBoard(r,c)) {
-            //Single move
-            ChessPosition target = new ChessPosition(r, c);
-            ChessPiece occupant = board.getPiece(target);
-
-            //attack left
-            if (cLeft >= 1) {
-                targetLeft = new ChessPosition(r, cLeft);
-                occupantLeft = board.getPiece(targetLeft);
-                if (occupantLeft != null && occupantLeft.getTeamColor() != pawn.getTeamColor()) {
-                    if (r == 1 || r == 8) {
-                        moves.add(new ChessMove(position, targetLeft, ChessPiece.PieceType.QUEEN));
-                        moves.add(new ChessMove(position, targetLeft, ChessPiece.PieceType.BISHOP));
-                        moves.add(new ChessMove(position, targetLeft, ChessPiece.PieceType.KNIGHT));
-                        moves.add(new ChessMove(position, targetLeft, ChessPiece.PieceType.ROOK));
-                    } else {
-                        moves.add(new ChessMove(position, targetLeft, null));
-                    }
-                }
 
-            }
+        long empty = ~board.occupied();
+        long enemy = board.occupancy(color ^ 1);
+        long bit = 1L << sq;
+        long pushes;
+        if (color == Bitboards.WHITE) {
+            long single = (bit << 8) & empty;
+            pushes = single | ((single & (Bitboards.RANK_2 << 8)) << 8) & empty;
+        } else {
+            long single = (bit >>> 8) & empty;
+            pushes = single | ((single & (Bitboards.RANK_7 >>> 8)) >>> 8) & empty;
+        }
+        return pushes | (Bitboards.PAWN_ATTACKS[color][sq] & enemy);
+    }
 
-            //attack right
-            if (cRight <= 8) {
-                targetRight = new ChessPosition(r, cRight);
-                occupantRight = board.getPiece(targetRight);
-                if (occupantRight != null && occupantRight.getTeamColor() != pawn.getTeamColor()) {
-                    if (r == 1 || r == 8) {
-                        moves.add(new ChessMove(position, targetRight, ChessPiece.PieceType.QUEEN));
-                        moves.add(new ChessMove(position, targetRight, ChessPiece.PieceType.BISHOP));
-                        moves.add(new ChessMove(position, targetRight, ChessPiece.PieceType.KNIGHT));
-                        moves.add(new ChessMove(position, targetRight, ChessPiece.PieceType.ROOK));
-                    } else {
-                        moves.add(new ChessMove(position, targetRight, null));
-                    }
-                }
-            }
+    /**
+     * Squares attacked by the piece on sq; for pawns this is the diagonal capture squares only
+     */
+    static long attacks(ChessBoard board, int pieceIndex, int sq) {
+        return switch (Bitboards.typeOf(pieceIndex)) {
+            case KING   -> Bitboards.KING_ATTACKS[sq];
+            case KNIGHT -> Bitboards.KNIGHT_ATTACKS[sq];
+            case BISHOP -> Bitboards.bishopAttacks(sq, board.occupied());
+            case ROOK   -> Bitboards.rookAttacks(sq, board.occupied());
+            case QUEEN  -> Bitboards.queenAttacks(sq, board.occupied());
+            case PAWN   -> Bitboards.PAWN_ATTACKS[Bitboards.colorOf(pieceIndex)][sq];
+        };
+    }
 
+    /**
+     * Works backwards from sq: a piece of byColor attacks it exactly when the same kind of
+     * piece standing on sq would attack that piece.
+     *
+     * @return bitboard of every byColor piece attacking sq given the occupancy
+     */
+    static long attackersOf(ChessBoard board, int sq, int byColor, long occupied) {
+        long bishopsQueens = board.pieces(byColor, ChessPiece.PieceType.BISHOP)
+                | board.pieces(byColor, ChessPiece.PieceType.QUEEN);
+        long rooksQueens = board.pieces(byColor, ChessPiece.PieceType.ROOK)
+                | board.pieces(byColor, ChessPiece.PieceType.QUEEN);
+        return (Bitboards.PAWN_ATTACKS[byColor ^ 1][sq] & board.pieces(byColor, ChessPiece.PieceType.PAWN))
+                | (Bitboards.KNIGHT_ATTACKS[sq] & board.pieces(byColor, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.KING_ATTACKS[sq] & board.pieces(byColor, ChessPiece.PieceType.KING))
+                | (Bitboards.bishopAttacks(sq, occupied) & bishopsQueens)
+                | (Bitboards.rookAttacks(sq, occupied) & rooksQueens);
+    }
 
-            //Double move from start
-            if (r2 != 0 && occupant == null) {
-                ChessPosition target2 = new ChessPosition(r2, c);
-                ChessPiece occupant2 = board.getPiece(target2);
-                if (occupant2 == null) {
-                    moves.add(new ChessMove(position, target2, null));
-                }
-            }
-            if (occupant == null) {
-                if (r == 8 || r == 1) {
-                    moves.add(new ChessMove(position, target, ChessPiece.PieceType.QUEEN));
-                    moves.add(new ChessMove(position, target, ChessPiece.PieceType.BISHOP));
-                    moves.add(new ChessMove(position, target, ChessPiece.PieceType.KNIGHT));
-                    moves.add(new ChessMove(position, target, ChessPiece.PieceType.ROOK));
-                } else {
-                    moves.add(new ChessMove(position, target, null));
-                }
-            }
-        }
-        return moves;
+    static boolean isAttacked(ChessBoard board, int sq, int byColor) {
+        return attackersOf(board, sq, byColor, board.occupied()) != 0;
     }
 }
@@ -0,0 +1,91 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Preallocated stack of the state a {@link ChessGame} needs to take a move back.
+ * <p>
+ * Each entry is packed into a single long so pushing and popping never allocates,
+ * alongside the position key from before the move:
+ * <pre>
+ * bits  0-17  the move as a {@link PackedMove}, with the flags actually applied
+ * bits 18-21  captured piece index + 1, or 0
+ * bits 22-25  castling rights before the move
+ * bits 26-32  en passant square before the move + 1, or 0
+ * </pre>
+ */
+final class UndoStack {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] entries = new long[INITIAL_CAPACITY];
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int size;
+
+    UndoStack() {
+    }
+
+    UndoStack(UndoStack other) {
+        entries = other.entries.clone();
+        keys = other.keys.clone();
+        size = other.size;
+    }
+
+    void push(int move, int captured, int castlingRights, int enPassantSquare, long key) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key;
+        entries[size++] = move
+                | (long) (captured + 1) << 18
+                | (long) castlingRights << 22
+                | (long) (enPassantSquare + 1) << 26;
+    }
+
+    long pop() {
+        return entries[--size];
+    }
+
+    /**
+     * @return the entry at the given depth, 0 being the oldest
+     */
+    long entry(int index) {
+        return entries[index];
+    }
+
+    /**
+     * @return position key from before the move at the given depth, 0 being the oldest
+     */
+    long key(int index) {
+        return keys[index];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    static int move(long entry) {
+        return (int) (entry & ((1 << PackedMove.MOVE_BITS) - 1));
+    }
+
+    static int captured(long entry) {
+        return (int) (entry >>> 18 & 15) - 1;
+    }
+
+    static int castlingRights(long entry) {
+        return (int) (entry >>> 22 & 15);
+    }
+
+    static int enPassantSquare(long entry) {
+        return (int) (entry >>> 26 & 127) - 1;
+    }
+}
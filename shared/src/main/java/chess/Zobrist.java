@@ -0,0 +1,49 @@
+package chess;
+
+/**
+ * Random 64-bit keys for Zobrist hashing. A position's key is the XOR of the keys
+ * for each piece on its square, the side to move, the castling rights and the
+ * en passant file, so any change to the position updates the key with a few XORs.
+ * <p>
+ * Keys come from a fixed seed so they are the same on every run and every machine.
+ */
+final class Zobrist {
+
+    static final long[][] PIECE_SQUARE = new long[Bitboards.PIECE_KINDS][64];
+    static final long BLACK_TO_MOVE;
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILE = new long[8];
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (long[] squares : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                squares[sq] = next();
+            }
+        }
+        BLACK_TO_MOVE = next();
+        long[] rights = {next(), next(), next(), next()};
+        for (int mask = 0; mask < CASTLING.length; mask++) {
+            for (int bit = 0; bit < rights.length; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    CASTLING[mask] ^= rights[bit];
+                }
+            }
+        }
+        for (int file = 0; file < EN_PASSANT_FILE.length; file++) {
+            EN_PASSANT_FILE[file] = next();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    // splitmix64
+    private static long next() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
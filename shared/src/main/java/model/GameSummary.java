@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * What the lobby shows for a game: who is seated and whether it can still be joined or
+ * played, without the game state itself
+ */
+public record GameSummary(Integer gameID,
+                          String whiteUsername,
+                          String blackUsername,
+                          String gameName,
+                          Status status) {
+
+    public enum Status {
+        /** Not over and at least one seat free */
+        OPEN,
+        /** Not over and both seats taken */
+        IN_PROGRESS,
+        FINISHED
+    }
+
+    public static Status statusOf(GameData game) {
+        if (game.game() != null && game.game().isGameOver()) {
+            return Status.FINISHED;
+        }
+        if (game.whiteUsername() == null || game.blackUsername() == null) {
+            return Status.OPEN;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    public static GameSummary of(GameData game) {
+        return new GameSummary(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                statusOf(game));
+    }
+}
@@ -0,0 +1,114 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes boards as the FEN piece placement, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR".
+ * Also reads boards stored by Gson reflection: the original {"squares":[[...]]} grid of
+ * pieces, rank 1 first, and the later {"pieces":[...],"colors":[...]} bitboards. Any other
+ * object is rejected rather than read as an empty board.
+ */
+public class ChessBoardAdapter extends TypeAdapter<ChessBoard> {
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != ChessBoard.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new ChessBoardAdapter(gson.getDelegateAdapter(this, TypeToken.get(ChessBoard.class)),
+                    gson.getAdapter(ChessPiece.class));
+        }
+    };
+
+    private final TypeAdapter<ChessBoard> reflective;
+    private final TypeAdapter<ChessPiece> pieces;
+
+    private ChessBoardAdapter(TypeAdapter<ChessBoard> reflective, TypeAdapter<ChessPiece> pieces) {
+        this.reflective = reflective;
+        this.pieces = pieces;
+    }
+
+    @Override
+    public void write(JsonWriter out, ChessBoard board) throws IOException {
+        if (board == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(board.toFen());
+    }
+
+    @Override
+    public ChessBoard read(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case STRING -> parse(in.nextString());
+            default -> readObject(JsonParser.parseReader(in));
+        };
+    }
+
+    private ChessBoard readObject(JsonElement element) {
+        if (!element.isJsonObject()) {
+            throw new JsonParseException("Unknown chess board format: " + element);
+        }
+        JsonObject object = element.getAsJsonObject();
+        if (object.has("squares")) {
+            return readSquares(object.get("squares"));
+        }
+        if (object.has("pieces") && object.has("colors")) {
+            return reflective.fromJsonTree(object);
+        }
+        throw new JsonParseException("Unknown chess board format: " + object.keySet());
+    }
+
+    /**
+     * Reads the original 8x8 grid, squares[row - 1][column - 1], each a piece or null
+     */
+    private ChessBoard readSquares(JsonElement squares) {
+        if (!squares.isJsonArray() || squares.getAsJsonArray().size() != 8) {
+            throw new JsonParseException("Chess board squares must be 8 rows");
+        }
+        ChessBoard board = new ChessBoard();
+        JsonArray rows = squares.getAsJsonArray();
+        for (int row = 1; row <= 8; row++) {
+            JsonElement rank = rows.get(row - 1);
+            if (!rank.isJsonArray() || rank.getAsJsonArray().size() != 8) {
+                throw new JsonParseException("Chess board row " + row + " must have 8 squares");
+            }
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = pieces.fromJsonTree(rank.getAsJsonArray().get(col - 1));
+                if (piece != null) {
+                    board.addPiece(ChessPosition.of(row, col), piece);
+                }
+            }
+        }
+        return board;
+    }
+
+    private static ChessBoard parse(String placement) {
+        try {
+            return ChessBoard.fromFen(placement);
+        } catch (IllegalArgumentException ex) {
+            throw new JsonParseException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes games as the single FEN string of {@link ChessGame#toFen()}, which carries the
+ * full position and the game over flag. Also reads the earlier {"fen":"...","gameOver":...}
+ * object, and games stored by Gson reflection before these adapters existed.
+ * <p>
+ * The original reflective game is {"turn":...,"board":{"squares":[[...]]},"gameOver":...}
+ * and records neither castling rights nor en passant; a king and rook still on their home
+ * squares are taken to be able to castle, as {@link ChessGame#setBoard} does. Later
+ * reflective games, with a bitboard board, go to the reflective adapter.
+ */
+public class ChessGameAdapter extends TypeAdapter<ChessGame> {
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != ChessGame.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new ChessGameAdapter(gson.getDelegateAdapter(this, TypeToken.get(ChessGame.class)),
+                    gson.getAdapter(ChessBoard.class));
+        }
+    };
+
+    private final TypeAdapter<ChessGame> reflective;
+    private final TypeAdapter<ChessBoard> boards;
+
+    private ChessGameAdapter(TypeAdapter<ChessGame> reflective, TypeAdapter<ChessBoard> boards) {
+        this.reflective = reflective;
+        this.boards = boards;
+    }
+
+    @Override
+    public void write(JsonWriter out, ChessGame game) throws IOException {
+        if (game == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(game.toFen());
+    }
+
+    @Override
+    public ChessGame read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (in.peek() == JsonToken.STRING) {
+            return parse(in.nextString(), false);
+        }
+        in.beginObject();
+        if (!in.hasNext()) {
+            in.endObject();
+            throw new JsonParseException("Chess game needs a fen");
+        }
+        String name = in.nextName();
+        if (!name.equals("fen") && !name.equals("gameOver")) {
+            return readReflective(in, name);
+        }
+        String fen = null;
+        boolean gameOver = false;
+        while (true) {
+            switch (name) {
+                case "fen" -> fen = in.nextString();
+                case "gameOver" -> gameOver = in.nextBoolean();
+                default -> in.skipValue();
+            }
+            if (!in.hasNext()) {
+                break;
+            }
+            name = in.nextName();
+        }
+        in.endObject();
+        if (fen == null) {
+            throw new JsonParseException("Chess game needs a fen");
+        }
+
+        return parse(fen, gameOver);
+    }
+
+    private static ChessGame parse(String fen, boolean gameOver) {
+        try {
+            ChessGame game = ChessGame.fromFen(fen);
+            if (gameOver) {
+                game.setGameOver(true);
+            }
+            return game;
+        } catch (IllegalArgumentException ex) {
+            throw new JsonParseException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Finishes reading an object in one of the older reflective shapes, whose first name
+     * has already been consumed
+     */
+    private ChessGame readReflective(JsonReader in, String firstName) throws IOException {
+        JsonObject object = new JsonObject();
+        String name = firstName;
+        while (true) {
+            object.add(name, JsonParser.parseReader(in));
+            if (!in.hasNext()) {
+                break;
+            }
+            name = in.nextName();
+        }
+        in.endObject();
+
+        JsonElement board = object.get("board");
+        if (board == null || !board.isJsonObject()) {
+            throw new JsonParseException("Unknown chess game format: " + object.keySet());
+        }
+        if (!board.getAsJsonObject().has("squares")) {
+            return reflective.fromJsonTree(object);
+        }
+
+        ChessGame game = new ChessGame();
+        game.setBoard(boards.fromJsonTree(board));
+        JsonElement turn = object.get("turn");
+        if (turn != null && !turn.isJsonNull()) {
+            try {
+                game.setTeamTurn(ChessGame.TeamColor.valueOf(turn.getAsString()));
+            } catch (IllegalArgumentException ex) {
+                throw new JsonParseException("Bad team to move: " + turn, ex);
+            }
+        }
+        JsonElement gameOver = object.get("gameOver");
+        game.setGameOver(gameOver != null && !gameOver.isJsonNull() && gameOver.getAsBoolean());
+        return game;
+    }
+}
@@ -0,0 +1,94 @@
+package serialization;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes moves in coordinate notation, e.g. "e2e4" or "e7e8q". The
+ * {"startPosition":...,"endPosition":...,"promotionPiece":...} shape Gson reflection
+ * produces is still accepted.
+ */
+public class ChessMoveAdapter extends TypeAdapter<ChessMove> {
+
+    private final ChessPositionAdapter positions = new ChessPositionAdapter();
+
+    @Override
+    public void write(JsonWriter out, ChessMove move) throws IOException {
+        if (move == null) {
+            out.nullValue();
+            return;
+        }
+        String text = move.getStartPosition().toString() + move.getEndPosition();
+        ChessPiece.PieceType promotion = move.getPromotionPiece();
+        if (promotion != null) {
+            text += promotion == ChessPiece.PieceType.KNIGHT ? 'n' : Character.toLowerCase(promotion.name().charAt(0));
+        }
+        out.value(text);
+    }
+
+    @Override
+    public ChessMove read(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case STRING -> parse(in.nextString());
+            default -> readObject(in);
+        };
+    }
+
+    private static ChessMove parse(String text) {
+        if (text.length() != 4 && text.length() != 5) {
+            throw new JsonParseException("Bad move: " + text);
+        }
+        ChessPiece.PieceType promotion = null;
+        if (text.length() == 5) {
+            promotion = switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new JsonParseException("Bad promotion piece: " + text);
+            };
+        }
+        return new ChessMove(ChessPositionAdapter.parse(text.substring(0, 2)),
+                ChessPositionAdapter.parse(text.substring(2, 4)), promotion);
+    }
+
+    private ChessMove readObject(JsonReader in) throws IOException {
+        ChessPosition start = null;
+        ChessPosition end = null;
+        ChessPiece.PieceType promotion = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startPosition" -> start = positions.read(in);
+                case "endPosition" -> end = positions.read(in);
+                case "promotionPiece" -> promotion = readPromotion(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (start == null || end == null) {
+            throw new JsonParseException("Chess move needs both startPosition and endPosition");
+        }
+        return new ChessMove(start, end, promotion);
+    }
+
+    private static ChessPiece.PieceType readPromotion(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return ChessPiece.PieceType.valueOf(in.nextString());
+    }
+}
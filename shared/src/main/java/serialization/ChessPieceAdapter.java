@@ -0,0 +1,83 @@
+package serialization;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes pieces as their FEN letter, upper case for white (e.g. "N", "p"), and hands back
+ * the shared {@link ChessPiece} instances when reading. The {"pieceColor":...,"type":...}
+ * shape Gson reflection produces is still accepted.
+ */
+public class ChessPieceAdapter extends TypeAdapter<ChessPiece> {
+
+    @Override
+    public void write(JsonWriter out, ChessPiece piece) throws IOException {
+        if (piece == null) {
+            out.nullValue();
+            return;
+        }
+        char letter = switch (piece.getPieceType()) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        out.value(String.valueOf(piece.getTeamColor() == ChessGame.TeamColor.WHITE
+                ? Character.toUpperCase(letter) : letter));
+    }
+
+    @Override
+    public ChessPiece read(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case STRING -> parse(in.nextString());
+            default -> readObject(in);
+        };
+    }
+
+    private static ChessPiece parse(String letter) {
+        if (letter.length() != 1) {
+            throw new JsonParseException("Bad piece: " + letter);
+        }
+        char c = letter.charAt(0);
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new JsonParseException("Bad piece: " + letter);
+        };
+        return ChessPiece.of(Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK, type);
+    }
+
+    private static ChessPiece readObject(JsonReader in) throws IOException {
+        ChessGame.TeamColor color = null;
+        ChessPiece.PieceType type = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pieceColor" -> color = ChessGame.TeamColor.valueOf(in.nextString());
+                case "type" -> type = ChessPiece.PieceType.valueOf(in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (color == null || type == null) {
+            throw new JsonParseException("Chess piece needs both pieceColor and type");
+        }
+        return ChessPiece.of(color, type);
+    }
+}
@@ -0,0 +1,67 @@
+package serialization;
+
+import chess.ChessPosition;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes positions as their square name, e.g. "e4", and hands back the shared
+ * {@link ChessPosition} instances when reading. The {"row":r,"col":c} shape Gson
+ * reflection produces is still accepted. Squares off the board are rejected.
+ */
+public class ChessPositionAdapter extends TypeAdapter<ChessPosition> {
+
+    @Override
+    public void write(JsonWriter out, ChessPosition position) throws IOException {
+        if (position == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(position.toString());
+    }
+
+    @Override
+    public ChessPosition read(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case STRING -> parse(in.nextString());
+            default -> readObject(in);
+        };
+    }
+
+    static ChessPosition parse(String square) {
+        if (square.length() != 2) {
+            throw new JsonParseException("Bad square: " + square);
+        }
+        return onBoard(square.charAt(1) - '0', square.charAt(0) - 'a' + 1, square);
+    }
+
+    private static ChessPosition readObject(JsonReader in) throws IOException {
+        int row = 0;
+        int col = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "row" -> row = in.nextInt();
+                case "col" -> col = in.nextInt();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return onBoard(row, col, "row " + row + ", col " + col);
+    }
+
+    private static ChessPosition onBoard(int row, int col, String text) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            throw new JsonParseException("Bad square: " + text);
+        }
+        return ChessPosition.of(row, col);
+    }
+}
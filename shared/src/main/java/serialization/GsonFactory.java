@@ -0,0 +1,40 @@
+package serialization;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Builds the Gson configuration shared by the server and the client, with the
+ * chess type adapters registered. The adapters write a compact text form of each chess
+ * type (FEN for games and boards, coordinate notation for moves) instead of the object
+ * graph Gson reflection would produce.
+ */
+public final class GsonFactory {
+
+    private static final Gson GSON = builder().create();
+
+    private GsonFactory() {
+    }
+
+    /**
+     * @return a builder with every chess adapter registered, for callers that need extra settings
+     */
+    public static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(ChessGameAdapter.FACTORY)
+                .registerTypeAdapterFactory(ChessBoardAdapter.FACTORY)
+                .registerTypeAdapter(ChessMove.class, new ChessMoveAdapter())
+                .registerTypeAdapter(ChessPosition.class, new ChessPositionAdapter())
+                .registerTypeAdapter(ChessPiece.class, new ChessPieceAdapter());
+    }
+
+    /**
+     * @return the shared instance; Gson is thread-safe so there is no need to build one per use
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+}
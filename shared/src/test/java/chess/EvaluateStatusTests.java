@@ -0,0 +1,48 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class EvaluateStatusTests {
+
+    @Test
+    @DisplayName("Start Position")
+    public void startPosition() {
+        GameStatus status = new ChessGame().evaluateStatus(ChessGame.TeamColor.WHITE);
+        Assertions.assertEquals(new GameStatus(false, 20), status);
+        Assertions.assertFalse(status.isGameOver());
+    }
+
+    @Test
+    @DisplayName("Fool's Mate")
+    public void checkmate() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 6), ChessPosition.of(3, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(2, 7), ChessPosition.of(4, 7), null));
+        game.makeMove(new ChessMove(ChessPosition.of(8, 4), ChessPosition.of(4, 8), null));
+
+        GameStatus status = game.evaluateStatus(ChessGame.TeamColor.WHITE);
+        Assertions.assertTrue(status.inCheck());
+        Assertions.assertTrue(status.isCheckmate());
+        Assertions.assertFalse(status.isStalemate());
+        Assertions.assertEquals(game.isInCheckmate(ChessGame.TeamColor.WHITE), status.isCheckmate());
+    }
+
+    @Test
+    @DisplayName("Stalemate")
+    public void stalemate() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(3, 2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        board.addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+
+        GameStatus status = game.evaluateStatus(ChessGame.TeamColor.WHITE);
+        Assertions.assertEquals(new GameStatus(false, 0), status);
+        Assertions.assertTrue(status.isStalemate());
+        Assertions.assertFalse(status.isCheckmate());
+    }
+}
@@ -0,0 +1,85 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FenTests {
+
+    @Test
+    @DisplayName("Start Position")
+    public void startPosition() {
+        Assertions.assertEquals(Fen.START_POSITION, new ChessGame().toFen());
+        Assertions.assertEquals(new ChessGame(), ChessGame.fromFen(Fen.START_POSITION));
+        Assertions.assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", new ChessGame().getBoard().toFen());
+    }
+
+    @Test
+    @DisplayName("Reference Positions Round Trip")
+    public void roundTrip() {
+        for (Perft.Reference reference : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = reference.game();
+            // The halfmove clock is not tracked
+            Assertions.assertEquals(reference.fen().replaceAll(" \\d+ (\\d+)$", " 0 $1"), game.toFen());
+            ChessGame copy = ChessGame.fromFen(game.toFen());
+            Assertions.assertEquals(game, copy);
+            Assertions.assertEquals(game.getPly(), copy.getPly());
+            Assertions.assertEquals(game.positionKey(), copy.positionKey());
+        }
+    }
+
+    @Test
+    @DisplayName("En Passant And Game Over")
+    public void extendedState() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        Assertions.assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", game.toFen());
+
+        game.setGameOver(true);
+        Assertions.assertTrue(game.toFen().endsWith(" 0 1 #"));
+        ChessGame copy = ChessGame.fromFen(game.toFen());
+        Assertions.assertTrue(copy.isGameOver());
+        Assertions.assertEquals(game, copy);
+
+        Assertions.assertFalse(ChessGame.fromFen("8/8/8/8/8/8/8/K6k w - -").isGameOver());
+    }
+
+    @Test
+    @DisplayName("Fullmove Number Follows Ply")
+    public void fullmoveNumber() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        Assertions.assertTrue(game.toFen().endsWith(" b KQkq - 0 2"), game.toFen());
+        Assertions.assertEquals(3, ChessGame.fromFen(game.toFen()).getPly());
+
+        game.setPly(41);
+        Assertions.assertTrue(game.toFen().endsWith(" 0 21"), game.toFen());
+        Assertions.assertEquals(41, ChessGame.fromFen(game.toFen()).getPly());
+        Assertions.assertEquals(0, ChessGame.fromFen("8/8/8/8/8/8/8/K6k w - -").getPly());
+        Assertions.assertEquals(19, ChessGame.fromFen("8/8/8/8/8/8/8/K6k b - - 12 10").getPly());
+    }
+
+    @Test
+    @DisplayName("Rejects Bad Input")
+    public void rejectsBadInput() {
+        String[] bad = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkz - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 # 2",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 2",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 99999999999",
+        };
+        for (String fen : bad) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessBoard.fromFen("8/8/8/8/8/8/8/7"));
+    }
+}
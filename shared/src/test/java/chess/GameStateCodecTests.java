@@ -0,0 +1,93 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class GameStateCodecTests {
+
+    @Test
+    @DisplayName("Start Position Size")
+    public void startPosition() {
+        ChessGame game = new ChessGame();
+        byte[] bytes = GameStateCodec.encode(game);
+        Assertions.assertEquals(28, bytes.length);
+        Assertions.assertEquals(game, GameStateCodec.decode(bytes));
+    }
+
+    @Test
+    @DisplayName("Reference Positions Round Trip")
+    public void roundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(GameStateCodec.MAX_SIZE * Perft.REFERENCE_POSITIONS.size());
+        for (Perft.Reference reference : Perft.REFERENCE_POSITIONS) {
+            GameStateCodec.encode(reference.game(), buffer);
+        }
+        buffer.flip();
+        for (Perft.Reference reference : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = GameStateCodec.decode(buffer);
+            Assertions.assertEquals(reference.game(), game, reference.name());
+            Assertions.assertEquals(reference.game().positionKey(), game.positionKey());
+        }
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("Flags Round Trip")
+    public void flags() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(1, 5), ChessPosition.of(2, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 4), ChessPosition.of(5, 4), null));
+        game.setGameOver(true);
+
+        ChessGame copy = GameStateCodec.decode(GameStateCodec.encode(game));
+        Assertions.assertEquals("rnbqkb1r/ppp1pppp/5n2/3p4/4P3/8/PPPPKPPP/RNBQ1BNR w kq d6 0 3 #", copy.toFen());
+        Assertions.assertTrue(copy.isGameOver());
+    }
+
+    @Test
+    @DisplayName("Ply Round Trip")
+    public void ply() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+
+        ChessGame copy = GameStateCodec.decode(GameStateCodec.encode(game));
+        Assertions.assertEquals(2, copy.getPly());
+        Assertions.assertEquals(3, copy.getFirstRecordedPly());
+        copy.makeMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        Assertions.assertEquals(3, copy.getPly());
+
+        // Long games take more than one byte for the ply
+        game.setPly(300_001);
+        byte[] bytes = GameStateCodec.encode(game);
+        Assertions.assertEquals(GameStateCodec.encodedSize(game), bytes.length);
+        Assertions.assertEquals(300_001, GameStateCodec.decode(bytes).getPly());
+    }
+
+    @Test
+    @DisplayName("Reads Version 1 Without Ply")
+    public void versionWithoutPly() {
+        byte[] bytes = GameStateCodec.encode(new ChessGame());
+        byte[] old = Arrays.copyOf(bytes, bytes.length - 1);
+        old[0] = 1;
+
+        ChessGame game = GameStateCodec.decode(old);
+        Assertions.assertEquals(new ChessGame(), game);
+        Assertions.assertEquals(0, game.getPly());
+    }
+
+    @Test
+    @DisplayName("Rejects Bad Input")
+    public void rejectsBadInput() {
+        byte[] bytes = GameStateCodec.encode(new ChessGame());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> GameStateCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[0] = 9;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameStateCodec.decode(bytes));
+    }
+}
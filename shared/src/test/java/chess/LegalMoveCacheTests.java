@@ -0,0 +1,56 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+public class LegalMoveCacheTests {
+
+    @Test
+    @DisplayName("Board Edits Are Seen After Caching")
+    public void boardEditsInvalidate() {
+        ChessGame game = new ChessGame();
+        ChessPosition e2 = ChessPosition.of(2, 5);
+        Assertions.assertEquals(2, game.validMoves(e2).size());
+
+        // Blocking the pawn through the board changes the position key, so the cached moves are not reused
+        game.getBoard().addPiece(ChessPosition.of(3, 5), ChessPiece.of(ChessGame.TeamColor.BLACK,
+                ChessPiece.PieceType.KNIGHT));
+        Assertions.assertEquals(Set.of(), game.validMoves(e2));
+    }
+
+    @Test
+    @DisplayName("Set Board Replaces Cached Moves")
+    public void setBoardInvalidates() {
+        ChessGame game = new ChessGame();
+        Assertions.assertFalse(game.isInStalemate(ChessGame.TeamColor.WHITE));
+
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(3, 2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        board.addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        game.setBoard(board);
+        Assertions.assertTrue(game.isInStalemate(ChessGame.TeamColor.WHITE));
+        Assertions.assertTrue(game.validMoves(ChessPosition.of(1, 1)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Moves Follow Make And Unmake")
+    public void makeAndUnmake() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        ChessPosition d7 = ChessPosition.of(7, 4);
+        Assertions.assertEquals(2, game.validMoves(d7).size());
+
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(d7, ChessPosition.of(5, 4), null));
+        Assertions.assertNull(game.validMoves(d7));
+        Assertions.assertEquals(2, game.validMoves(ChessPosition.of(5, 4)).size());
+
+        game.unmakeMove();
+        Assertions.assertEquals(2, game.validMoves(d7).size());
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(ChessPosition.of(5, 4), ChessPosition.of(4, 5), null)));
+    }
+}
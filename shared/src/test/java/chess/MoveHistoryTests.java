@@ -0,0 +1,94 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MoveHistoryTests {
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (String move : moves) {
+            game.makeMove(PackedMove.toChessMove(PackedMove.parse(move)));
+        }
+    }
+
+    @Test
+    @DisplayName("Moves Are Numbered By Ply")
+    public void movesByPly() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "e2e4", "e7e5", "g1f3");
+
+        Assertions.assertEquals(3, game.getPly());
+        Assertions.assertEquals(1, game.getFirstRecordedPly());
+        Assertions.assertEquals("e2e4", PackedMove.toString(game.getMove(1)));
+        Assertions.assertEquals("g1f3", PackedMove.toString(game.getMove(3)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.getMove(4));
+
+        long afterThree = game.positionKey();
+        game.unmakeMove();
+        Assertions.assertEquals(2, game.getPly());
+        Assertions.assertEquals(game.positionKey(), game.getPositionKey(2));
+        Assertions.assertEquals(new ChessGame().positionKey(), game.getPositionKey(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.getPositionKey(3));
+        play(game, "g1f3");
+        Assertions.assertEquals(afterThree, game.getPositionKey(3));
+    }
+
+    @Test
+    @DisplayName("Restored Game Continues Ply Count")
+    public void restoredPly() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2");
+        game.setPly(2);
+        play(game, "g1f3");
+
+        Assertions.assertEquals(3, game.getPly());
+        Assertions.assertEquals(3, game.getFirstRecordedPly());
+        Assertions.assertEquals("g1f3", PackedMove.toString(game.getMove(3)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.getMove(2));
+        Assertions.assertEquals(ChessGame.fromFen("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2")
+                .positionKey(), game.getPositionKey(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.getPositionKey(1));
+        Assertions.assertEquals(3, new ChessGame(game).getPly());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.setPly(0));
+    }
+
+    @Test
+    @DisplayName("Threefold Repetition Is Counted")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(0, game.repetitionCount());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(1, game.repetitionCount());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(2, game.repetitionCount());
+
+        play(game, "g1f3");
+        Assertions.assertEquals(2, game.repetitionCount());
+    }
+
+    @Test
+    @DisplayName("Lost Castling Rights Break Repetition")
+    public void castlingRightsBreakRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        play(game, "g1f3", "g8f6", "h1g1", "h8g8", "g1h1", "g8h8", "f3g1", "f6g8");
+
+        // Same pieces as the start, but neither side may castle kingside any more
+        Assertions.assertEquals(0, game.repetitionCount());
+
+        play(game, "g1f3", "g8f6", "f3g1", "f6g8");
+        Assertions.assertEquals(1, game.repetitionCount());
+    }
+
+    @Test
+    @DisplayName("Coordinate Notation Round Trip")
+    public void parseMoves() {
+        for (String move : new String[]{"e2e4", "a7a8q", "h2h1n", "e1g1"}) {
+            Assertions.assertEquals(move, PackedMove.toString(PackedMove.parse(move)));
+        }
+        for (String bad : new String[]{"", "e2e", "e2e9", "i2e4", "e7e8k", "e2e4qq"}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> PackedMove.parse(bad));
+        }
+    }
+}
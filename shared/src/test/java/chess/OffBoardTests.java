@@ -0,0 +1,55 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class OffBoardTests {
+
+    @Test
+    @DisplayName("Off-Board Squares Hold No Piece")
+    public void getPieceOffBoard() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+
+        // (9, 1) and (0, 8) would wrap onto a1 and h-file squares if not checked
+        Assertions.assertNull(board.getPiece(new ChessPosition(9, 1)));
+        Assertions.assertNull(board.getPiece(new ChessPosition(0, 8)));
+        Assertions.assertNull(board.getPiece(new ChessPosition(1, 0)));
+        Assertions.assertNull(board.getPiece(new ChessPosition(1, 9)));
+    }
+
+    @Test
+    @DisplayName("Pieces Cannot Be Added Off The Board")
+    public void addPieceOffBoard() {
+        ChessBoard board = new ChessBoard();
+        ChessPiece rook = ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.addPiece(new ChessPosition(1, 9), rook));
+        Assertions.assertNull(board.getPiece(ChessPosition.of(2, 1)));
+    }
+
+    @Test
+    @DisplayName("Off-Board Moves Are Invalid")
+    public void makeMoveOffBoard() {
+        ChessGame game = new ChessGame();
+        ChessBoard before = new ChessBoard(game.getBoard());
+
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(new ChessPosition(9, 1), ChessPosition.of(1, 1), null)));
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(ChessPosition.of(2, 1), new ChessPosition(2, 0), null)));
+        Assertions.assertEquals(before, game.getBoard());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        Assertions.assertNull(game.validMoves(new ChessPosition(0, 1)));
+    }
+
+    @Test
+    @DisplayName("Off-Board Moves Cannot Be Packed")
+    public void packOffBoard() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PackedMove.fromChessMove(new ChessMove(new ChessPosition(9, 1), ChessPosition.of(1, 1), null)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PackedMove.fromChessMove(new ChessMove(ChessPosition.of(1, 1), new ChessPosition(1, 9), null)));
+    }
+}
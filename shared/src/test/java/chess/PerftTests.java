@@ -0,0 +1,111 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class PerftTests {
+
+    // Keeps the suite fast; run Perft.main for the deeper counts
+    private static final long NODE_LIMIT = 1_000_000L;
+
+    @Test
+    @DisplayName("Reference Position Node Counts")
+    public void referencePositions() {
+        for (Perft.Reference reference : Perft.REFERENCE_POSITIONS) {
+            for (int depth = 1; depth <= reference.maxDepth() && reference.nodes(depth) <= NODE_LIMIT; depth++) {
+                Assertions.assertEquals(reference.nodes(depth), Perft.perft(reference.game(), depth),
+                        "perft(" + depth + ") of " + reference.name());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Perft Leaves Game Unchanged")
+    public void perftRestoresGame() {
+        Perft.Reference kiwipete = Perft.REFERENCE_POSITIONS.get(1);
+        ChessGame game = kiwipete.game();
+        Perft.perft(game, 3);
+        Assertions.assertEquals(kiwipete.game(), game);
+    }
+
+    @Test
+    @DisplayName("Divide Sums To Perft")
+    public void divideSumsToPerft() {
+        Perft.Reference kiwipete = Perft.REFERENCE_POSITIONS.get(1);
+        Map<String, Long> divide = Perft.divide(kiwipete.game(), 3);
+        Assertions.assertEquals(kiwipete.nodes(1), divide.size());
+        Assertions.assertEquals(kiwipete.nodes(3), divide.values().stream().mapToLong(Long::longValue).sum());
+        Assertions.assertTrue(divide.containsKey("e1g1"), "castling move missing from divide");
+    }
+
+    @Test
+    @DisplayName("Parallel Perft Matches Reference")
+    public void parallelPerft() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Perft.Reference reference : Perft.REFERENCE_POSITIONS) {
+                int depth = 1;
+                while (depth < reference.maxDepth() && reference.nodes(depth + 1) <= NODE_LIMIT) {
+                    depth++;
+                }
+                for (int splitPlies = 0; splitPlies <= 2; splitPlies++) {
+                    Assertions.assertEquals(reference.nodes(depth),
+                            Perft.parallelPerft(reference.game(), depth, splitPlies, pool),
+                            "parallel perft(" + depth + ") of " + reference.name() + " splitting " + splitPlies);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Copies Are Independent")
+    public void copiesAreIndependent() throws InvalidMoveException {
+        ChessGame original = Perft.REFERENCE_POSITIONS.get(1).game();
+        ChessGame copy = new ChessGame(original);
+        Assertions.assertEquals(original, copy);
+
+        copy.makeMove(new ChessMove(ChessPosition.of(1, 5), ChessPosition.of(1, 7), null));
+        Assertions.assertNotEquals(original, copy);
+        Assertions.assertEquals(Perft.REFERENCE_POSITIONS.get(1).game(), original);
+
+        copy.unmakeMove();
+        Assertions.assertEquals(original, copy);
+        Assertions.assertEquals(original.positionKey(), copy.positionKey());
+    }
+
+    @Test
+    @DisplayName("Concurrent Copying Of A Shared Game")
+    public void concurrentCopies() throws Exception {
+        Perft.Reference kiwipete = Perft.REFERENCE_POSITIONS.get(1);
+        ChessGame shared = kiwipete.game();
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < threads * 8; i++) {
+                results.add(executor.submit(() -> {
+                    // Copy the shared game and play on the copy while other threads copy it too
+                    ChessGame copy = new ChessGame(shared);
+                    return Perft.perft(copy, 3);
+                }));
+            }
+            for (Future<Long> result : results) {
+                Assertions.assertEquals(kiwipete.nodes(3), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(kiwipete.game(), shared);
+    }
+}
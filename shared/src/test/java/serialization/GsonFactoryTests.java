@@ -0,0 +1,114 @@
+package serialization;
+
+import chess.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class GsonFactoryTests {
+
+    private static final Gson GSON = GsonFactory.gson();
+
+    @Test
+    @DisplayName("Game Written As FEN")
+    public void gameAsFen() {
+        Assertions.assertEquals("\"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1\"",
+                GSON.toJson(new ChessGame()));
+    }
+
+    @Test
+    @DisplayName("Game Round Trip Keeps Full State")
+    public void gameRoundTrip() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(1, 5), ChessPosition.of(2, 5), null));
+        game.setGameOver(true);
+
+        ChessGame copy = GSON.fromJson(GSON.toJson(game), ChessGame.class);
+        Assertions.assertEquals(game, copy);
+        Assertions.assertEquals(game.positionKey(), copy.positionKey());
+        Assertions.assertTrue(copy.isGameOver());
+        Assertions.assertEquals(game.validMoves(ChessPosition.of(8, 5)), copy.validMoves(ChessPosition.of(8, 5)));
+    }
+
+    @Test
+    @DisplayName("Reads Object Form")
+    public void readsObjectForm() {
+        ChessGame game = GSON.fromJson("{\"fen\":\"8/8/8/8/8/8/8/K6k b - - 0 1\",\"gameOver\":true}", ChessGame.class);
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        Assertions.assertTrue(game.isGameOver());
+    }
+
+    @Test
+    @DisplayName("Reads Reflective Game")
+    public void readsReflectiveGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null));
+        game.setGameOver(true);
+        String reflective = new GsonBuilder().create().toJson(game);
+
+        ChessGame copy = GSON.fromJson(reflective, ChessGame.class);
+        Assertions.assertEquals(game, copy);
+        Assertions.assertTrue(copy.isGameOver());
+    }
+
+    // A game as the original server stored it with new Gson(): 1. e4 e5 2. Ke2, black to move
+    private static final String BASELINE_GAME = """
+            {"turn":"BLACK","board":{"squares":[
+              [{"pieceColor":"WHITE","type":"ROOK"},{"pieceColor":"WHITE","type":"KNIGHT"},{"pieceColor":"WHITE","type":"BISHOP"},{"pieceColor":"WHITE","type":"QUEEN"},null,{"pieceColor":"WHITE","type":"BISHOP"},{"pieceColor":"WHITE","type":"KNIGHT"},{"pieceColor":"WHITE","type":"ROOK"}],
+              [{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"KING"},{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"PAWN"},{"pieceColor":"WHITE","type":"PAWN"}],
+              [null,null,null,null,null,null,null,null],
+              [null,null,null,null,{"pieceColor":"WHITE","type":"PAWN"},null,null,null],
+              [null,null,null,null,{"pieceColor":"BLACK","type":"PAWN"},null,null,null],
+              [null,null,null,null,null,null,null,null],
+              [{"pieceColor":"BLACK","type":"PAWN"},{"pieceColor":"BLACK","type":"PAWN"},{"pieceColor":"BLACK","type":"PAWN"},{"pieceColor":"BLACK","type":"PAWN"},null,{"pieceColor":"BLACK","type":"PAWN"},{"pieceColor":"BLACK","type":"PAWN"},{"pieceColor":"BLACK","type":"PAWN"}],
+              [{"pieceColor":"BLACK","type":"ROOK"},{"pieceColor":"BLACK","type":"KNIGHT"},{"pieceColor":"BLACK","type":"BISHOP"},{"pieceColor":"BLACK","type":"QUEEN"},{"pieceColor":"BLACK","type":"KING"},{"pieceColor":"BLACK","type":"BISHOP"},{"pieceColor":"BLACK","type":"KNIGHT"},{"pieceColor":"BLACK","type":"ROOK"}]
+            ]},"gameOver":false}
+            """;
+
+    @Test
+    @DisplayName("Reads Original Reflective Game")
+    public void readsBaselineGame() {
+        ChessGame game = GSON.fromJson(BASELINE_GAME, ChessGame.class);
+        Assertions.assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPPKPPP/RNBQ1BNR b kq - 0 1", game.toFen());
+        Assertions.assertFalse(game.isGameOver());
+
+        ChessGame finished = GSON.fromJson(BASELINE_GAME.replace("\"gameOver\":false", "\"gameOver\":true"),
+                ChessGame.class);
+        Assertions.assertTrue(finished.isGameOver());
+    }
+
+    @Test
+    @DisplayName("Rejects Unknown Board Object")
+    public void rejectsUnknownBoard() {
+        Assertions.assertThrows(JsonParseException.class,
+                () -> GSON.fromJson("{\"turn\":\"WHITE\",\"board\":{\"cells\":[]}}", ChessGame.class));
+        Assertions.assertThrows(JsonParseException.class,
+                () -> GSON.fromJson("{\"squares\":[[]]}", ChessBoard.class));
+    }
+
+    @Test
+    @DisplayName("Moves, Positions And Pieces")
+    public void smallTypes() {
+        ChessMove promotion = new ChessMove(ChessPosition.of(7, 1), ChessPosition.of(8, 2), ChessPiece.PieceType.KNIGHT);
+        Assertions.assertEquals("\"a7b8n\"", GSON.toJson(promotion));
+        Assertions.assertEquals(promotion, GSON.fromJson("\"a7b8n\"", ChessMove.class));
+        Assertions.assertEquals(promotion, GSON.fromJson(new Gson().toJson(promotion), ChessMove.class));
+
+        Assertions.assertEquals("\"e4\"", GSON.toJson(ChessPosition.of(4, 5)));
+        Assertions.assertSame(ChessPosition.of(4, 5), GSON.fromJson("{\"row\":4,\"col\":5}", ChessPosition.class));
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"i1\"", ChessPosition.class));
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"a9\"", ChessPosition.class));
+        Assertions.assertThrows(JsonParseException.class,
+                () -> GSON.fromJson("{\"row\":9,\"col\":1}", ChessPosition.class));
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"a9a1\"", ChessMove.class));
+
+        ChessPiece knight = ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
+        Assertions.assertEquals("\"n\"", GSON.toJson(knight));
+        Assertions.assertSame(knight, GSON.fromJson("\"n\"", ChessPiece.class));
+    }
+}